@@ -1,16 +1,38 @@
 package it.unitn.ds;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.ItemPage;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
 import it.unitn.ds.rmi.NodeClient;
+import it.unitn.ds.rmi.NodeServer;
+import it.unitn.ds.rmi.OverloadedException;
+import it.unitn.ds.util.BulkLoadUtil;
 import it.unitn.ds.util.InputUtil;
+import it.unitn.ds.util.KeyUtil;
+import it.unitn.ds.util.KeyspaceUtil;
 import it.unitn.ds.util.NetworkUtil;
+import it.unitn.ds.util.RebalanceUtil;
 import it.unitn.ds.util.RemoteUtil;
+import it.unitn.ds.util.RoutingUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simulates client of the server node's ring
@@ -21,6 +43,13 @@ public final class ClientLauncher {
 
     private static final Logger logger = LogManager.getLogger();
 
+    private static final int SCAN_PAGE_SIZE = ServiceConfiguration.getScanPageSize();
+
+    /**
+     * Count of distinct item keys used by the benchmark
+     */
+    private static final int BENCHMARK_KEYS = 100;
+
     /**
      * Description: method name,node host,node id,item key,item value
      * Example: update,localhost,10,8,New Value Item
@@ -28,8 +57,28 @@ public final class ClientLauncher {
      * Example: update,localhost,10,17,New Value Item
      * Example: update,localhost,10,22,New Value Item
      * Example: update,localhost,10,26,New Value Item
+     * Example: update,localhost,10,30,Session Item,60000
      * Example: get,localhost,10,12
+     * Example: delete,localhost,10,22
+     * Example: update,localhost,10,sessions,5,Session Item
+     * Example: get,localhost,10,sessions,5
+     * Example: delete,localhost,10,sessions,5
+     * Example: update,localhost,10,user:42,String Key Item
+     * Example: get,localhost,10,user:42
+     * Example: delete,localhost,10,user:42
+     * Example: scan,localhost,10,1,30
+     * Example: scan,localhost,10,1,30,1
      * Example: view,localhost,10
+     * Example: metrics,localhost,10
+     * Example: configure,localhost,10,replication-timeout-value,5
+     * Example: load,localhost,10,items.csv
+     * Example: rebalance,localhost,10,dry-run
+     * Example: rebalance,localhost,10
+     * Example: connect,localhost,10
+     * Example: get,12
+     * Example: update,12,New Value Item
+     * Example: delete,12
+     * Example: benchmark,localhost,10,10000,200
      */
     public static void main(String args[]) {
         logger.info("Type in: method name,node host,node id,item key,item value");
@@ -38,7 +87,28 @@ public final class ClientLauncher {
         logger.info("Example: update,localhost,10,17,New Value Item");
         logger.info("Example: update,localhost,10,22,New Value Item");
         logger.info("Example: update,localhost,10,26,New Value Item");
+        logger.info("Example: update,localhost,10,30,Session Item,60000");
         logger.info("Example: get,localhost,10,12");
+        logger.info("Example: delete,localhost,10,22");
+        logger.info("Example: update,localhost,10,sessions,5,Session Item");
+        logger.info("Example: get,localhost,10,sessions,5");
+        logger.info("Example: delete,localhost,10,sessions,5");
+        logger.info("Example: update,localhost,10,user:42,String Key Item");
+        logger.info("Example: get,localhost,10,user:42");
+        logger.info("Example: delete,localhost,10,user:42");
+        logger.info("Example: scan,localhost,10,1,30");
+        logger.info("Example: scan,localhost,10,1,30,1");
+        logger.info("Example: view,localhost,10");
+        logger.info("Example: metrics,localhost,10");
+        logger.info("Example: configure,localhost,10,replication-timeout-value,5");
+        logger.info("Example: load,localhost,10,items.csv");
+        logger.info("Example: rebalance,localhost,10,dry-run");
+        logger.info("Example: rebalance,localhost,10");
+        logger.info("Example: connect,localhost,10");
+        logger.info("Example: get,12");
+        logger.info("Example: update,12,New Value Item");
+        logger.info("Example: delete,12");
+        logger.info("Example: benchmark,localhost,10,10000,200");
         NetworkUtil.printMachineIPv4();
         logger.info("Client is ready for request >");
         InputUtil.readInput(ClientLauncher.class.getName());
@@ -57,6 +127,354 @@ public final class ClientLauncher {
         logger.info("Got item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
     }
 
+    /**
+     * Fetches the ring from the node, so get/update requests without coordinator are routed directly to the item nodes
+     *
+     * @param nodeHost of the node
+     * @param nodeId   of the node
+     * @see it.unitn.ds.util.RoutingUtil
+     */
+    public static void connect(@NotNull String nodeHost, int nodeId) {
+        if (RoutingUtil.connect(nodeHost, nodeId)) {
+            logger.info("Connected to the ring nodes=" + Arrays.toString(RoutingUtil.getNodes().entrySet().toArray()));
+        } else {
+            logger.warn("Failed to connect to the ring via nodeId=" + nodeId);
+        }
+    }
+
+    /**
+     * Get item from the node of the item preference list
+     *
+     * @param itemKey of the item
+     * @see it.unitn.ds.util.RoutingUtil
+     */
+    public static void get(final int itemKey) throws RemoteException {
+        Item item = RoutingUtil.execute(itemKey, new RoutingUtil.Request<Item>() {
+            @Override
+            public Item execute(@NotNull NodeClient coordinator) throws RemoteException {
+                return coordinator.getItem(itemKey);
+            }
+        });
+        logger.info("Got item=" + item + " by routing");
+    }
+
+    /**
+     * Creates/Update item on the node of the item preference list
+     *
+     * @param itemKey   of the item
+     * @param itemValue new item value
+     * @see it.unitn.ds.util.RoutingUtil
+     */
+    public static void update(final int itemKey, @NotNull final String itemValue) throws RemoteException {
+        if (itemKey <= 0) {
+            logger.warn("Item key must be positive integer [ itemKey > 0 ] !");
+            return;
+        }
+        Item item = RoutingUtil.execute(itemKey, new RoutingUtil.Request<Item>() {
+            @Override
+            public Item execute(@NotNull NodeClient coordinator) throws RemoteException {
+                return coordinator.updateItem(itemKey, itemValue);
+            }
+        });
+        logger.info("Updated item=" + item + " by routing");
+    }
+
+    /**
+     * Creates/Update item on the node of the item preference list, which expires after time to live
+     *
+     * @param itemKey   of the item
+     * @param itemValue new item value
+     * @param ttl       milliseconds for the item to live
+     * @see it.unitn.ds.util.RoutingUtil
+     */
+    public static void update(final int itemKey, @NotNull final String itemValue, final int ttl) throws RemoteException {
+        if (itemKey <= 0 || ttl <= 0) {
+            logger.warn("Item key and time to live must be positive integers [ itemKey > 0 && ttl > 0 ] !");
+            return;
+        }
+        Item item = RoutingUtil.execute(itemKey, new RoutingUtil.Request<Item>() {
+            @Override
+            public Item execute(@NotNull NodeClient coordinator) throws RemoteException {
+                return coordinator.updateItem(itemKey, itemValue, ttl);
+            }
+        });
+        logger.info("Updated item=" + item + " by routing");
+    }
+
+    /**
+     * Deletes item on the node of the item preference list
+     *
+     * @param itemKey of the item
+     * @see it.unitn.ds.util.RoutingUtil
+     */
+    public static void delete(final int itemKey) throws RemoteException {
+        if (itemKey <= 0) {
+            logger.warn("Item key must be positive integer [ itemKey > 0 ] !");
+            return;
+        }
+        Item tombstone = RoutingUtil.execute(itemKey, new RoutingUtil.Request<Item>() {
+            @Override
+            public Item execute(@NotNull NodeClient coordinator) throws RemoteException {
+                return coordinator.deleteItem(itemKey);
+            }
+        });
+        logger.info("Deleted item=" + tombstone + " by routing");
+    }
+
+    /**
+     * Scans items with keys in the range from the node in the ring page by page, reading from READ quorum,
+     * at most N of the keyspaces the range crosses
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain items
+     * @param fromKey           first item key, inclusively
+     * @param toKey             last item key, inclusively
+     * @see it.unitn.ds.Replication
+     */
+    public static void scan(@NotNull String coordinatorHost, int coordinatorNodeId, int fromKey, int toKey) throws RemoteException {
+        scan(coordinatorHost, coordinatorNodeId, fromKey, toKey, Math.min(Replication.getR(), KeyspaceUtil.getN(fromKey, toKey)));
+    }
+
+    /**
+     * Scans items with keys in the range from the node in the ring page by page
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain items
+     * @param fromKey           first item key, inclusively
+     * @param toKey             last item key, inclusively
+     * @param quorum            count of nodes to read every segment of the range from
+     */
+    public static void scan(@NotNull String coordinatorHost, int coordinatorNodeId, int fromKey, int toKey, int quorum) throws RemoteException {
+        NodeClient coordinator = RemoteUtil.getRemoteNode(new Node(coordinatorNodeId, coordinatorHost), NodeClient.class);
+        Integer nextKey = fromKey;
+        int count = 0;
+        while (nextKey != null) {
+            ItemPage page = coordinator.getItems(nextKey, toKey, SCAN_PAGE_SIZE, quorum);
+            if (page == null) {
+                logger.warn("Failed to scan from key=" + nextKey + " on coordinatorNodeId=" + coordinatorNodeId);
+                return;
+            }
+            for (Item item : page.getItems()) {
+                logger.info("Scanned item=" + item);
+            }
+            count += page.getItems().size();
+            nextKey = page.getNextKey();
+        }
+        logger.info("Scanned " + count + " items in range [" + fromKey + ", " + toKey + "] from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * View ring topology from the node in the ring, summaries of the nodes are requested in parallel
+     *
+     * @param nodeHost of the node in the ring
+     * @param nodeId   of the node in the ring
+     * @see it.unitn.ds.entity.NodeStatus
+     */
+    public static void view(@NotNull String nodeHost, int nodeId) throws RemoteException {
+        Map<Integer, String> nodes = RemoteUtil.getRemoteNode(new Node(nodeId, nodeHost), NodeServer.class).getNodes();
+        Map<Integer, NodeStatus> statuses = RemoteUtil.getStatuses(nodes);
+        int items = 0;
+        long bytes = 0;
+        int healthy = 0;
+        for (int id : nodes.keySet()) {
+            NodeStatus status = statuses.get(id);
+            if (status == null) {
+                logger.warn("NodeId=" + id + " is not reachable");
+                continue;
+            }
+            logger.info(status);
+            items += status.getItemCount();
+            bytes += status.getBytes();
+            if (status.isHealthy()) {
+                healthy++;
+            }
+        }
+        logger.info("Viewed " + nodes.size() + " nodes from nodeId=" + nodeId + ": healthy=" + healthy + ", items=" + items + ", bytes=" + bytes);
+    }
+
+    /**
+     * View metrics of the node in the ring
+     *
+     * @param nodeHost of the node
+     * @param nodeId   of the node
+     */
+    public static void metrics(@NotNull String nodeHost, int nodeId) throws RemoteException {
+        Map<String, Number> metrics = RemoteUtil.getRemoteNode(new Node(nodeId, nodeHost), NodeClient.class).getMetrics();
+        for (Map.Entry<String, Number> entry : metrics.entrySet()) {
+            logger.info("Metric " + entry.getKey() + "=" + entry.getValue());
+        }
+        logger.info("Viewed " + metrics.size() + " metrics of nodeId=" + nodeId);
+    }
+
+    /**
+     * Changes the parameter of service configuration at runtime on every node of the ring
+     * <p>
+     * Nodes are reconfigured one by one, the node which fails to apply the change keeps its current configuration
+     *
+     * @param nodeHost of the node in the ring
+     * @param nodeId   of the node in the ring
+     * @param key      of the parameter
+     * @param value    new value of the parameter
+     * @see it.unitn.ds.ServiceConfiguration#RUNTIME_KEYS
+     */
+    public static void configure(@NotNull String nodeHost, int nodeId, @NotNull String key, @NotNull String value) throws RemoteException {
+        Map<Integer, String> nodes = RemoteUtil.getRemoteNode(new Node(nodeId, nodeHost), NodeServer.class).getNodes();
+        int configured = 0;
+        for (Map.Entry<Integer, String> entry : nodes.entrySet()) {
+            try {
+                int version = RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).configure(Collections.singletonMap(key, value));
+                logger.info("Configured " + key + "=" + value + " on nodeId=" + entry.getKey() + ", version=" + version);
+                configured++;
+            } catch (RemoteException e) {
+                logger.warn("Failed to configure " + key + "=" + value + " on nodeId=" + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        logger.info("Configured " + configured + " of " + nodes.size() + " nodes");
+    }
+
+    /**
+     * Changes the integer parameter of service configuration at runtime on every node of the ring
+     *
+     * @see #configure(String, int, String, String)
+     */
+    public static void configure(@NotNull String nodeHost, int nodeId, @NotNull String key, int value) throws RemoteException {
+        configure(nodeHost, nodeId, key, String.valueOf(value));
+    }
+
+    /**
+     * Bulk loads items from CSV file directly into the nodes of the ring and reports throughput
+     * <p>
+     * CSV file has the same format as the storage of the node, loaded items keep versions from the file
+     *
+     * @param nodeHost of the node in the ring
+     * @param nodeId   of the node in the ring
+     * @param fileName of CSV file
+     * @see it.unitn.ds.util.BulkLoadUtil
+     */
+    public static void load(@NotNull String nodeHost, int nodeId, @NotNull String fileName) throws Exception {
+        Path path = Paths.get(fileName);
+        if (!Files.isRegularFile(path)) {
+            logger.warn("File to load does not exist, fileName=" + fileName);
+            return;
+        }
+        Map<Integer, String> nodes = RemoteUtil.getRemoteNode(new Node(nodeId, nodeHost), NodeServer.class).getNodes();
+        long start = System.nanoTime();
+        int count = BulkLoadUtil.load(path, nodes);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        logger.info("Loaded " + count + " items from fileName=" + fileName + " into " + nodes.size() + " nodes in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms" +
+                ", throughput=" + count * TimeUnit.SECONDS.toNanos(1) / elapsed + " items/s" +
+                ", " + Files.size(path) * TimeUnit.SECONDS.toNanos(1) / elapsed / 1024 + " KB/s");
+    }
+
+    /**
+     * Measures the load of the nodes of the ring and moves the nodes, so every node gets an equal share of the load
+     *
+     * @param nodeHost of the node in the ring
+     * @param nodeId   of the node in the ring
+     * @see it.unitn.ds.util.RebalanceUtil
+     */
+    public static void rebalance(@NotNull String nodeHost, int nodeId) throws RemoteException {
+        rebalance(nodeHost, nodeId, false);
+    }
+
+    /**
+     * Measures the load of the nodes of the ring and prints the planned moves without executing them
+     *
+     * @param nodeHost of the node in the ring
+     * @param nodeId   of the node in the ring
+     * @param mode     must be dry-run
+     */
+    public static void rebalance(@NotNull String nodeHost, int nodeId, @NotNull String mode) throws RemoteException {
+        if (!mode.equals("dry-run")) {
+            logger.warn("Unknown rebalance mode=" + mode + ", expected dry-run");
+            return;
+        }
+        rebalance(nodeHost, nodeId, true);
+    }
+
+    private static void rebalance(@NotNull String nodeHost, int nodeId, boolean dryRun) throws RemoteException {
+        Map<Integer, String> nodes = RemoteUtil.getRemoteNode(new Node(nodeId, nodeHost), NodeServer.class).getNodes();
+        List<RebalanceUtil.Move> moves = RebalanceUtil.plan(nodes);
+        for (RebalanceUtil.Move move : moves) {
+            logger.info("Planned " + move);
+        }
+        if (moves.isEmpty()) {
+            logger.info("Ring of " + nodes.size() + " nodes needs no rebalancing");
+            return;
+        }
+        if (dryRun) {
+            logger.info("Dry run planned " + moves.size() + " moves of " + nodes.size() + " nodes");
+            return;
+        }
+        long start = System.nanoTime();
+        int count = RebalanceUtil.execute(moves, nodes);
+        logger.info("Rebalanced " + nodes.size() + " nodes with " + count + " moves in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    /**
+     * Sends mixed get/update requests on random keys to the node in the ring by concurrent workers and reports latencies
+     * <p>
+     * Workers run on platform threads regardless of the client configuration, so the same load runs against rings
+     * started with PLATFORM and VIRTUAL modes, and the report names the mode the coordinator actually runs with
+     * <p>
+     * Requests rejected by admission control of the node are reported as overloaded, not as failures
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain items
+     * @param requests          total count of requests
+     * @param concurrency       count of workers sending requests one after another
+     * @see it.unitn.ds.ExecutorMode
+     */
+    public static void benchmark(@NotNull String coordinatorHost, int coordinatorNodeId, final int requests, int concurrency) throws Exception {
+        if (requests <= 0 || concurrency <= 0) {
+            logger.warn("Count of requests and concurrency must be positive integers [ requests > 0 && concurrency > 0 ] !");
+            return;
+        }
+        final NodeClient coordinator = RemoteUtil.getRemoteNode(new Node(coordinatorNodeId, coordinatorHost), NodeClient.class);
+        final long[] latencies = new long[requests];
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger overloaded = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder().setNameFormat("benchmark-%d").setDaemon(true).build());
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int request = sent.getAndIncrement(); request < requests; request = sent.getAndIncrement()) {
+                        int itemKey = 1 + ThreadLocalRandom.current().nextInt(BENCHMARK_KEYS);
+                        long requestStart = System.nanoTime();
+                        try {
+                            Item item = request % 2 == 0 ? coordinator.getItem(itemKey) : coordinator.updateItem(itemKey, "Benchmark Value " + request);
+                            if (item == null && request % 2 != 0) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (RemoteException e) {
+                            if (OverloadedException.isCause(e)) {
+                                overloaded.incrementAndGet();
+                            } else {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        latencies[request] = System.nanoTime() - requestStart;
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        Map<String, Number> metrics = coordinator.getMetrics();
+        ExecutorMode mode = metrics.get("executor.virtual").intValue() == 1 ? ExecutorMode.VIRTUAL : ExecutorMode.PLATFORM;
+        logger.info("Benchmark coordinatorNodeId=" + coordinatorNodeId + " mode=" + mode + ", requests=" + requests + ", concurrency=" + concurrency + ", failures=" + failures.get() + ", overloaded=" + overloaded.get());
+        logger.info("Benchmark throughput=" + requests * TimeUnit.SECONDS.toNanos(1) / elapsed + " requests/s" +
+                ", latency p50=" + TimeUnit.NANOSECONDS.toMillis(latencies[requests / 2]) + "ms" +
+                ", p99=" + TimeUnit.NANOSECONDS.toMillis(latencies[(int) (requests * 0.99)]) + "ms" +
+                ", max=" + TimeUnit.NANOSECONDS.toMillis(latencies[requests - 1]) + "ms");
+        logger.info("Benchmark coordinatorNodeId=" + coordinatorNodeId + " threads live=" + metrics.get("threads.live") + ", peak=" + metrics.get("threads.peak"));
+    }
+
     /**
      * Creates/Update item of the node in the ring
      *
@@ -74,4 +492,170 @@ public final class ClientLauncher {
         Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(itemKey, itemValue);
         logger.info("Updated item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
     }
+
+    /**
+     * Creates/Update item of the node in the ring, which expires after time to live
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param itemKey           of the item
+     * @param itemValue         new item value
+     * @param ttl               milliseconds for the item to live
+     */
+    public static void update(@NotNull String coordinatorHost, int coordinatorNodeId, int itemKey, @NotNull String itemValue, int ttl) throws RemoteException {
+        if (itemKey <= 0 || ttl <= 0) {
+            logger.warn("Item key and time to live must be positive integers [ itemKey > 0 && ttl > 0 ] !");
+            return;
+        }
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(itemKey, itemValue, ttl);
+        logger.info("Updated item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Deletes item of the node in the ring
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param itemKey           of the item
+     */
+    public static void delete(@NotNull String coordinatorHost, int coordinatorNodeId, int itemKey) throws RemoteException {
+        if (itemKey <= 0) {
+            logger.warn("Item key must be positive integer [ itemKey > 0 ] !");
+            return;
+        }
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item tombstone = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).deleteItem(itemKey);
+        logger.info("Deleted item=" + tombstone + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Get item of the keyspace from the node in the ring
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param keyspace          name of the keyspace
+     * @param key               of the item in the keyspace
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    public static void get(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String keyspace, int key) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).getItem(keyspace, key);
+        logger.info("Got item=" + item + " of keyspace=" + keyspace + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Creates/Update item of the keyspace of the node in the ring
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param keyspace          name of the keyspace
+     * @param key               of the item in the keyspace
+     * @param itemValue         new item value
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    public static void update(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String keyspace, int key, @NotNull String itemValue) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(keyspace, key, itemValue, 0);
+        logger.info("Updated item=" + item + " of keyspace=" + keyspace + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Creates/Update item of the keyspace of the node in the ring, which expires after time to live
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param keyspace          name of the keyspace
+     * @param key               of the item in the keyspace
+     * @param itemValue         new item value
+     * @param ttl               milliseconds for the item to live
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    public static void update(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String keyspace, int key, @NotNull String itemValue, int ttl) throws RemoteException {
+        if (ttl <= 0) {
+            logger.warn("Time to live must be positive integer [ ttl > 0 ] !");
+            return;
+        }
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(keyspace, key, itemValue, ttl);
+        logger.info("Updated item=" + item + " of keyspace=" + keyspace + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Deletes item of the keyspace of the node in the ring
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param keyspace          name of the keyspace
+     * @param key               of the item in the keyspace
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    public static void delete(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String keyspace, int key) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item tombstone = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).deleteItem(keyspace, key);
+        logger.info("Deleted item=" + tombstone + " of keyspace=" + keyspace + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Get item of the string key from the node in the ring, integer keys are item keys
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param key               string key of the item
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    public static void get(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String key) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).getItem(KeyUtil.toBytes(key));
+        logger.info("Got item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Creates/Update item of the string key of the node in the ring, integer keys are item keys
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param key               string key of the item
+     * @param itemValue         new item value
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    public static void update(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String key, @NotNull String itemValue) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(KeyUtil.toBytes(key), itemValue, 0);
+        logger.info("Updated item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Creates/Update item of the string key of the node in the ring, which expires after time to live
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param key               string key of the item
+     * @param itemValue         new item value
+     * @param ttl               milliseconds for the item to live
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    public static void update(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String key, @NotNull String itemValue, int ttl) throws RemoteException {
+        if (ttl <= 0) {
+            logger.warn("Time to live must be positive integer [ ttl > 0 ] !");
+            return;
+        }
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item item = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).updateItem(KeyUtil.toBytes(key), itemValue, ttl);
+        logger.info("Updated item=" + item + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
+
+    /**
+     * Deletes item of the string key of the node in the ring, integer keys are item keys
+     *
+     * @param coordinatorHost   of the node
+     * @param coordinatorNodeId of the node, does not have to contain item
+     * @param key               string key of the item
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    public static void delete(@NotNull String coordinatorHost, int coordinatorNodeId, @NotNull String key) throws RemoteException {
+        Node coordinatorNode = new Node(coordinatorNodeId, coordinatorHost);
+        Item tombstone = RemoteUtil.getRemoteNode(coordinatorNode, NodeClient.class).deleteItem(KeyUtil.toBytes(key));
+        logger.info("Deleted item=" + tombstone + " from coordinatorNodeId=" + coordinatorNodeId);
+    }
 }
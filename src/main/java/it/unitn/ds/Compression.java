@@ -0,0 +1,21 @@
+package it.unitn.ds;
+
+/**
+ * Represents the codecs to compress item values in the storage and in transfers between the nodes
+ * <p>
+ * Compressed values are tagged with the ordinal of the codec, so new codecs must be added to the end
+ *
+ * @see it.unitn.ds.util.CompressionUtil
+ */
+public enum Compression {
+
+    /**
+     * Values are stored and transferred as is
+     */
+    NONE,
+
+    /**
+     * Values above the threshold are compressed by Deflate
+     */
+    DEFLATE,
+}
@@ -0,0 +1,21 @@
+package it.unitn.ds;
+
+/**
+ * Represents the ways to resolve items updated concurrently on different coordinators
+ *
+ * @see it.unitn.ds.entity.VectorClock
+ * @see it.unitn.ds.util.VersionUtil
+ */
+public enum ConflictResolution {
+
+    /**
+     * Value with the latest timestamp wins, other concurrent values are discarded
+     */
+    LAST_WRITE_WINS,
+
+    /**
+     * Value with the latest timestamp is returned together with other concurrent values as siblings,
+     * client resolves them by updating the item
+     */
+    SIBLINGS,
+}
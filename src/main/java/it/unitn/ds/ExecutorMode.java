@@ -0,0 +1,21 @@
+package it.unitn.ds;
+
+/**
+ * Represents the kinds of threads running coordinator requests to the replicas
+ *
+ * @see it.unitn.ds.util.MultithreadingUtil
+ * @see it.unitn.ds.ClientLauncher
+ */
+public enum ExecutorMode {
+
+    /**
+     * Bounded pool of platform threads, requests queue up when all threads are blocked on remote calls
+     */
+    PLATFORM,
+
+    /**
+     * New virtual thread per request, blocking remote calls do not hold platform threads (requires JDK 21+),
+     * falls back to PLATFORM on older JDKs
+     */
+    VIRTUAL,
+}
@@ -0,0 +1,24 @@
+package it.unitn.ds;
+
+/**
+ * Represents the kinds of client requests coordinated by the node, every kind is admitted under it's own concurrency limit
+ *
+ * @see it.unitn.ds.util.AdmissionUtil
+ */
+public enum Operation {
+
+    /**
+     * Get of one item from READ quorum of replicas
+     */
+    READ,
+
+    /**
+     * Update or delete of one item on WRITE quorum of replicas
+     */
+    WRITE,
+
+    /**
+     * Page of the range scan, reading every node segment of the range from the quorum
+     */
+    SCAN,
+}
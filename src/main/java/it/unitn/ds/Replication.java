@@ -1,35 +1,55 @@
 package it.unitn.ds;
 
 import it.unitn.ds.entity.ReplicationTimeout;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Configures replication within the ring and quorums for read/write access
  * <p>
  * Must maintain the formula [ W + R > N ] to avoid read/write conflicts
+ * <p>
+ * Parameters can be changed at runtime, so they are read on every request instead of being kept in constants
  *
  * @see it.unitn.ds.entity.Item
  * @see it.unitn.ds.entity.Node
  * @see it.unitn.ds.ServiceConfiguration
  */
-public interface Replication {
+public abstract class Replication {
 
     /**
      * Timeout for get/update client operations
      */
-    ReplicationTimeout TIMEOUT = ServiceConfiguration.getReplicationTimeout();
+    @NotNull
+    public static ReplicationTimeout getTimeout() {
+        return ServiceConfiguration.getReplicationTimeout();
+    }
 
     /**
      * Write quorum
      */
-    int W = ServiceConfiguration.getReplicationW();
+    public static int getW() {
+        return ServiceConfiguration.getReplicationW();
+    }
 
     /**
      * Read quorum
      */
-    int R = ServiceConfiguration.getReplicationR();
+    public static int getR() {
+        return ServiceConfiguration.getReplicationR();
+    }
 
     /**
      * Count of successor nodes used for replication, including itself
      */
-    int N = ServiceConfiguration.getReplicationN();
+    public static int getN() {
+        return ServiceConfiguration.getReplicationN();
+    }
+
+    /**
+     * Resolution of the items updated concurrently
+     */
+    @NotNull
+    public static ConflictResolution getConflictResolution() {
+        return ServiceConfiguration.getReplicationConflictResolution();
+    }
 }
@@ -1,23 +1,36 @@
 package it.unitn.ds;
 
+import com.google.common.base.Stopwatch;
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.Keyspace;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.entity.TokenRange;
 import it.unitn.ds.rmi.NodeRemote;
 import it.unitn.ds.rmi.NodeServer;
 import it.unitn.ds.rmi.NullNodeRemote;
+import it.unitn.ds.util.BloomFilterUtil;
+import it.unitn.ds.util.ExpiryUtil;
+import it.unitn.ds.util.GossipUtil;
 import it.unitn.ds.util.InputUtil;
+import it.unitn.ds.util.MultithreadingUtil;
 import it.unitn.ds.util.NetworkUtil;
+import it.unitn.ds.util.ReadCacheUtil;
+import it.unitn.ds.util.RecoveryUtil;
 import it.unitn.ds.util.RemoteUtil;
 import it.unitn.ds.util.StorageUtil;
+import it.unitn.ds.util.VersionUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Simulates server node in the ring
@@ -45,16 +58,27 @@ public final class ServerLauncher {
      * Example: join,localhost,20,localhost,15
      * Example: join,localhost,25,localhost,20
      * Example: join,localhost,20,localhost,25
+     * Example: move,22
      * Example: crash
      * Example: recover,localhost,20
+     * Example: snapshot
+     * Example: backup
+     * Example: restore
+     * Example: reload
      * Example: leave
      */
     public static void main(String[] args) {
         logger.info("You can change service configuration parameters in " + ServiceConfiguration.CONFIGURATION_FILE);
-        logger.info("Service configuration: RMI port=" + RMI_PORT);
-        logger.info("Service configuration: Replication W=" + Replication.W + ", R=" + Replication.R + ", N=" + Replication.N);
-        logger.info("Service configuration: Replication TIMEOUT=" + Replication.TIMEOUT);
-        if (Replication.W + Replication.R <= Replication.N) {
+        logger.info("Service configuration: RMI port=" + RMI_PORT + ", zone=" + ServiceConfiguration.getZone());
+        logger.info("Service configuration: Replication W=" + Replication.getW() + ", R=" + Replication.getR() + ", N=" + Replication.getN());
+        logger.info("Service configuration: Replication TIMEOUT=" + Replication.getTimeout());
+        logger.info("Service configuration: Replication CONFLICT_RESOLUTION=" + Replication.getConflictResolution());
+        for (Keyspace keyspace : ServiceConfiguration.getKeyspaces()) {
+            logger.info("Service configuration: Keyspace=" + keyspace);
+        }
+        logger.info("Service configuration: Coordinator parallelism=" + ServiceConfiguration.getCoordinatorParallelism() + ", executor mode=" + ServiceConfiguration.getExecutorMode());
+        logger.info("Service configuration: Gossip interval=" + ServiceConfiguration.getGossipInterval() + "ms, fanout=" + ServiceConfiguration.getGossipFanout() + ", phi threshold=" + ServiceConfiguration.getGossipPhiThreshold());
+        if (Replication.getW() + Replication.getR() <= Replication.getN()) {
             logger.warn("Replication parameters must maintain formula [ W + R > N ] !");
             return;
         }
@@ -64,8 +88,13 @@ public final class ServerLauncher {
         logger.info("Example: join,localhost,20,localhost,15");
         logger.info("Example: join,localhost,25,localhost,20");
         logger.info("Example: join,localhost,30,localhost,25");
+        logger.info("Example: move,22");
         logger.info("Example: crash");
         logger.info("Example: recover,localhost,20");
+        logger.info("Example: snapshot");
+        logger.info("Example: backup");
+        logger.info("Example: restore");
+        logger.info("Example: reload");
         logger.info("Example: leave");
         logger.info("Example: view");
         StorageUtil.init();
@@ -92,6 +121,8 @@ public final class ServerLauncher {
         startRMIRegistry();
         logger.info("NodeId=" + nodeId + " is the first node in the ring");
         node = register(nodeId, nodeHost);
+        GossipUtil.start(node);
+        ExpiryUtil.start(node);
         logger.info("NodeId=" + nodeId + " is connected as first node=" + node);
         nodeState = NodeState.CONNECTED;
     }
@@ -116,21 +147,24 @@ public final class ServerLauncher {
             return;
         }
         startRMIRegistry();
+        Stopwatch stopwatch = Stopwatch.createStarted();
         logger.info("NodeId=" + nodeId + " connects to existing nodeId=" + existingNodeId);
-        Node existingNode = RemoteUtil.getRemoteNode(new Node(existingNodeId, existingNodeHost), NodeServer.class).getNode();
-        if (existingNode.getNodes().isEmpty()) {
+        Map<Integer, String> existingNodes = RemoteUtil.getRemoteNode(new Node(existingNodeId, existingNodeHost), NodeServer.class).getNodes();
+        if (existingNodes.isEmpty()) {
             logger.warn("Existing node must be operational!");
             return;
         }
-        if (existingNode.getNodes().containsKey(nodeId)) {
+        if (existingNodes.containsKey(nodeId)) {
             logger.warn("Cannot join as nodeId=" + nodeId + " already taken!");
             return;
         }
         node = register(nodeId, nodeHost);
-        node.putNodes(existingNode.getNodes());
+        node.putNodes(existingNodes);
+        GossipUtil.start(node);
+        ExpiryUtil.start(node);
         announceJoin();
         updateItemsAndReplicas();
-        logger.info("NodeId=" + nodeId + " connected as node=" + node + " from existingNode=" + existingNode);
+        logger.info("NodeId=" + nodeId + " connected as node=" + node + " from existingNodeId=" + existingNodeId + " in " + stopwatch);
         nodeState = NodeState.CONNECTED;
     }
 
@@ -143,15 +177,60 @@ public final class ServerLauncher {
             return;
         }
         logger.info("NodeId=" + node.getId() + " is disconnecting from the ring...");
+        Stopwatch stopwatch = Stopwatch.createStarted();
         passItemsAndReplicas();
         announceLeave();
+        GossipUtil.stop();
+        ExpiryUtil.stop();
         Naming.unbind(RemoteUtil.getNodeRMI(node));
         StorageUtil.removeFile(node.getId());
-        logger.info("NodeId=" + node.getId() + " disconnected");
+        logger.info("NodeId=" + node.getId() + " disconnected in " + stopwatch);
         node = null;
         nodeState = NodeState.DISCONNECTED;
     }
 
+    /**
+     * Moves current node to the new position in the ring: the node leaves passing all it's items to the successor
+     * and joins back with the new id taking the items of the new token range from the successor,
+     * so items stay available in the ring during the move
+     *
+     * @param nodeId new id of current node
+     * @return true if the node has moved, false otherwise
+     * @see it.unitn.ds.util.RebalanceUtil
+     */
+    public static synchronized boolean move(int nodeId) throws Exception {
+        if (nodeState != NodeState.CONNECTED) {
+            logger.warn("Must be CONNECTED to move! Current nodeState=" + nodeState);
+            return false;
+        }
+        if (nodeId <= 0) {
+            logger.warn("Node id must be positive integer [ nodeID > 0 ] !");
+            return false;
+        }
+        if (node.getNodes().containsKey(nodeId)) {
+            logger.warn("Cannot move as nodeId=" + nodeId + " already taken!");
+            return false;
+        }
+        if (node.getNodes().size() < 2) {
+            logger.warn("Cannot move the only node of the ring!");
+            return false;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        int previousNodeId = node.getId();
+        String nodeHost = node.getHost();
+        int existingNodeId = RemoteUtil.getSuccessorNodeId(previousNodeId, node.getNodes());
+        String existingNodeHost = node.getNodes().get(existingNodeId);
+        logger.info("NodeId=" + previousNodeId + " is moving to nodeId=" + nodeId + " via existing nodeId=" + existingNodeId);
+        leave();
+        join(nodeHost, nodeId, existingNodeHost, existingNodeId);
+        if (nodeState != NodeState.CONNECTED) {
+            logger.error("NodeId=" + previousNodeId + " left the ring, but failed to join back as nodeId=" + nodeId);
+            return false;
+        }
+        logger.info("NodeId=" + previousNodeId + " moved to nodeId=" + nodeId + " in " + stopwatch);
+        return true;
+    }
+
     /**
      * Signals current node to crash, removes any in memory data, except for node id and host
      * Persistent storage (CSV file with items and replicas) remains untouched
@@ -162,6 +241,10 @@ public final class ServerLauncher {
             return;
         }
         logger.info("NodeId=" + node.getId() + " is crashing down...");
+        GossipUtil.stop();
+        ExpiryUtil.stop();
+        ReadCacheUtil.invalidateAll();
+        BloomFilterUtil.invalidateAll();
         node = new Node(node);
         node.removeNode(node.getId());
         Naming.rebind(RemoteUtil.getNodeRMI(node), new NullNodeRemote(node));
@@ -187,6 +270,7 @@ public final class ServerLauncher {
             return;
         }
         logger.info("NodeId=" + node.getId() + " is recovering...");
+        Stopwatch stopwatch = Stopwatch.createStarted();
         Map<Integer, String> existingNode = RemoteUtil.getRemoteNode(new Node(existingNodeId, existingNodeHost), NodeServer.class).getNodes();
         if (existingNode.isEmpty()) {
             logger.warn("Existing node must be operational!");
@@ -194,39 +278,117 @@ public final class ServerLauncher {
         }
         node.putNodes(existingNode);
         Naming.rebind(RemoteUtil.getNodeRMI(node), new NodeRemote(node));
+        GossipUtil.start(node);
+        ExpiryUtil.start(node);
+        announceJoin();
         recoverItems();
-        logger.info("NodeId=" + node.getId() + " has recovered");
+        logger.info("NodeId=" + node.getId() + " has recovered in " + stopwatch);
         nodeState = NodeState.CONNECTED;
     }
 
+    /**
+     * Takes point-in-time snapshot of the node storage, while the node keeps serving requests
+     *
+     * @see it.unitn.ds.util.StorageUtil
+     */
+    public static void snapshot() {
+        if (nodeState != NodeState.CONNECTED) {
+            logger.warn("Must be CONNECTED to take snapshot! Current nodeState=" + nodeState);
+            return;
+        }
+        Path snapshot = StorageUtil.snapshot(node.getId());
+        if (snapshot != null) {
+            logger.info("NodeId=" + node.getId() + " took snapshot=" + snapshot);
+        }
+    }
+
+    /**
+     * Takes incremental backup of the node storage since the latest snapshot, while the node keeps serving requests
+     *
+     * @see it.unitn.ds.util.StorageUtil
+     */
+    public static void backup() {
+        if (nodeState != NodeState.CONNECTED) {
+            logger.warn("Must be CONNECTED to take backup! Current nodeState=" + nodeState);
+            return;
+        }
+        Path backup = StorageUtil.backup(node.getId());
+        if (backup != null) {
+            logger.info("NodeId=" + node.getId() + " took backup=" + backup);
+        }
+    }
+
+    /**
+     * Restores the node storage from the latest snapshot and backup, so the following recover starts from it
+     *
+     * @see it.unitn.ds.util.StorageUtil
+     */
+    public static void restore() {
+        if (nodeState != NodeState.CRASHED) {
+            logger.warn("Must be CRASHED to restore! Current nodeState=" + nodeState);
+            return;
+        }
+        int count = StorageUtil.restore(node.getId());
+        if (count >= 0) {
+            logger.info("NodeId=" + node.getId() + " restored " + count + " items and replicas");
+        }
+    }
+
+    /**
+     * Reads the configuration file again and applies the changed parameters to the node at runtime
+     * <p>
+     * Only the node itself is reconfigured, other nodes of the ring reload their own configuration files
+     *
+     * @see it.unitn.ds.ServiceConfiguration#RUNTIME_KEYS
+     */
+    public static void reload() throws Exception {
+        if (nodeState != NodeState.CONNECTED) {
+            logger.warn("Must be CONNECTED to reload configuration! Current nodeState=" + nodeState);
+            return;
+        }
+        Map<String, String> changes = ServiceConfiguration.readChanges();
+        if (changes.isEmpty()) {
+            logger.info("NodeId=" + node.getId() + " has no configuration changes to reload");
+            return;
+        }
+        int version = RemoteUtil.getRemoteNode(node, NodeServer.class).configure(changes);
+        logger.info("NodeId=" + node.getId() + " reloaded configuration changes=" + changes + ", version=" + version);
+    }
+
     /**
      * View ring topology from the node in the ring
+     * <p>
+     * Summaries of the nodes are requested in parallel, items and replicas are not transferred
+     *
+     * @see it.unitn.ds.entity.NodeStatus
      */
     public static void view() throws RemoteException {
         if (nodeState != NodeState.CONNECTED) {
             logger.warn("Must be CONNECTED to view topology! Current nodeState=" + nodeState);
             return;
         }
-        List<Node> nodes = new LinkedList<>();
-        for (Map.Entry<Integer, String> entry : RemoteUtil.getRemoteNode(node, NodeServer.class).getNodes().entrySet()) {
-            nodes.add(RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).getNode());
-        }
+        Map<Integer, String> nodes = RemoteUtil.getRemoteNode(node, NodeServer.class).getNodes();
+        Map<Integer, NodeStatus> statuses = RemoteUtil.getStatuses(nodes);
         logger.info("Viewing topology from node=" + node);
-        for (Node node : nodes) {
-            logger.info(node);
+        for (int nodeId : nodes.keySet()) {
+            if (statuses.containsKey(nodeId)) {
+                logger.info(statuses.get(nodeId));
+            } else {
+                logger.warn("NodeId=" + nodeId + " is not reachable");
+            }
         }
     }
 
     /**
-     * Registers RMI for new node, initializes node object
+     * Registers RMI for new node, initializes node object with the host labeled with the zone of the node
      *
      * @param id   of the new node
      * @param host of the new node
      */
     @NotNull
     private static Node register(int id, @NotNull String host) throws Exception {
-        System.setProperty("java.rmi.server.hostname", host);
-        Node node = new Node(id, host);
+        System.setProperty("java.rmi.server.hostname", RemoteUtil.getAddress(host));
+        Node node = new Node(id, RemoteUtil.getLabeledHost(host, ServiceConfiguration.getZone()));
         Naming.bind(RemoteUtil.getNodeRMI(node), new NodeRemote(node));
         Runtime.getRuntime().addShutdownHook(new Thread() {
             public void run() {
@@ -245,256 +407,277 @@ public final class ServerLauncher {
 
     /**
      * When joining the ring update items and replicas for current node
-     * Items are stolen from successor node and passed to successor as replicas
-     * Replicas are updated from neighboring nodes and removed from Replication.N replica node
+     * Token range of items is stolen from successor node, which keeps it as replicas if it stays in the preference list
+     * Token ranges of replicas are updated from the nodes holding them and removed from the nodes, which are not
+     * in their preference lists any more
      */
-    private static void updateItemsAndReplicas() throws RemoteException {
-        Node successorNode = RemoteUtil.getSuccessorNode(node, node.getNodes());
-        List<Item> items = new ArrayList<>(getLatestItems(successorNode).values());
-        if (!items.isEmpty()) {
-            RemoteUtil.getRemoteNode(node, NodeServer.class).updateItems(items);
-            RemoteUtil.getRemoteNode(successorNode, NodeServer.class).removeItems(items);
-            RemoteUtil.getRemoteNode(successorNode, NodeServer.class).updateReplicas(items);
-            logger.debug("Updated items=" + Arrays.toString(items.toArray()) + " from successorNode=" + successorNode);
-            removeLastReplica(items);
-        }
-        List<Item> replicas = new ArrayList<>(getLatestReplicas());
-        if (!replicas.isEmpty()) {
-            RemoteUtil.getRemoteNode(node, NodeServer.class).updateReplicas(replicas);
-            logger.debug("Updated replicas=" + Arrays.toString(replicas.toArray()) + " from successorNode=" + successorNode);
-            removeLastReplica(replicas);
-        }
+    private static void updateItemsAndReplicas() {
+        Map<Integer, String> after = new TreeMap<>(node.getNodes());
+        Map<Integer, String> before = new TreeMap<>(after);
+        before.remove(node.getId());
+        transferRanges(before, after);
     }
 
     /**
-     * Removes last replica from original node, holding the replica as item
-     * Only for nodes with size higher than max number of replica nodes
-     *
-     * @param replicas collection of items to be removed
+     * When leaving the ring pass items and replicas from current node
+     * Token range of items is passed to successor node, which drops it's replicas of the range
+     * Token ranges of replicas are propagated to the nodes, which take the place of current node in their preference lists
      */
-    private static void removeLastReplica(@NotNull Collection<Item> replicas) throws RemoteException {
-        if (node.getNodes().size() > Replication.N) {
-            for (Item replica : replicas) {
-                Node nodeForItem = RemoteUtil.getNodeForItem(replica.getKey(), node.getNodes());
-                Node nthSuccessor = RemoteUtil.getNthSuccessor(nodeForItem, node.getNodes(), Replication.N);
-                RemoteUtil.getRemoteNode(nthSuccessor, NodeServer.class).removeReplicas(Arrays.asList(replica));
-                logger.debug("Removed replica=" + replica + " from nthSuccessor=" + nthSuccessor);
-            }
-        }
+    private static void passItemsAndReplicas() {
+        Map<Integer, String> before = new TreeMap<>(node.getNodes());
+        Map<Integer, String> after = new TreeMap<>(before);
+        after.remove(node.getId());
+        transferRanges(before, after);
     }
 
     /**
-     * When leaving the ring pass items and replicas from current node
-     * Items are passed to successor node and removes it from successors replica
-     * Replicas are propagated to Replication.N + 1 replica node
+     * Moves the token ranges, which change their preference lists when current node joins or leaves the ring
+     * <p>
+     * Example:
+     * - assume Replication N = 3 and no zones
+     * - NX is the node to join
+     * - ranges of N2, N3 and NX change their preference lists
+     * <p>
+     * -----------------------------------------------------
+     * | range | before       | after        | moves        |
+     * -----------------------------------------------------
+     * | N2    | N2, N3, N4   | N2, N3, NX   | N4 -> NX     |
+     * | N3    | N3, N4, N5   | N3, NX, N4   | N5 -> NX     |
+     * | NX    | N4, N5, N6   | NX, N4, N5   | N6 -> NX     |
+     * -----------------------------------------------------
+     * <p>
+     * With zones the preference lists may change further away from current node, every changed range is moved
+     * the same way. Ranges are moved concurrently, one task per range
+     *
+     * @param before set of nodes before the change
+     * @param after  set of nodes after the change
      */
-    private static void passItemsAndReplicas() throws RemoteException {
-        List<Item> items = new ArrayList<>(getLatestItems(node).values());
-        if (!items.isEmpty()) {
-            Node successorNode = RemoteUtil.getSuccessorNode(node, node.getNodes());
-            RemoteUtil.getRemoteNode(successorNode, NodeServer.class).removeReplicas(items);
-            RemoteUtil.getRemoteNode(successorNode, NodeServer.class).updateItems(items);
-            logger.debug("Passed items=" + Arrays.toString(items.toArray()) + " to successorNode=" + successorNode);
-            Node nthSuccessor = RemoteUtil.getNthSuccessor(node, node.getNodes(), Replication.N);
-            RemoteUtil.getRemoteNode(nthSuccessor, NodeServer.class).updateReplicas(items);
-            logger.debug("Passed items as replicas=" + Arrays.toString(items.toArray()) + " to nthSuccessor=" + nthSuccessor);
-        }
-        for (Item replica : node.getReplicas().values()) {
-            Node nodeForItem = RemoteUtil.getNodeForItem(replica.getKey(), node.getNodes());
-            Node nthSuccessor = RemoteUtil.getNthSuccessor(nodeForItem, node.getNodes(), Replication.N);
-            RemoteUtil.getRemoteNode(nthSuccessor, NodeServer.class).updateReplicas(Arrays.asList(replica));
-            logger.debug("Passed replica=" + replica + " to nthSuccessor=" + nthSuccessor);
+    private static void transferRanges(@NotNull final Map<Integer, String> before, @NotNull final Map<Integer, String> after) {
+        Map<Integer, String> ring = before.size() > after.size() ? before : after;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int ownerId : ring.keySet()) {
+            final TokenRange range = RemoteUtil.getTokenRange(ownerId, ring);
+            final List<Integer> previous = RemoteUtil.getPreferenceList(ownerId, before, Replication.getN());
+            final List<Integer> next = RemoteUtil.getPreferenceList(ownerId, after, Replication.getN());
+            if (previous.equals(next)) {
+                continue;
+            }
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    transferRange(range, previous, next, after);
+                    return null;
+                }
+            });
         }
+        MultithreadingUtil.executeAll(tasks);
     }
 
     /**
-     * Searches for latest version of items from neighboring nodes
-     * <p>
-     * Example:
-     * - assume Replication.N = 3
-     * - NX is the node to join
-     * - x marks possible places of replicas for NX
-     * - y marks the replicas of NX we want to find
+     * Reads latest items of the token range from the nodes of the previous preference list, passes them to the nodes,
+     * which have joined the preference list, and removes them from the nodes, which have left it
      * <p>
-     * ----------------------------------------
-     * | nodes   | N1 | N2 | N3 | NX | N4 | N5 |
-     * ----------------------------------------
-     * | replica |    |    | x  | y  | x  |    |
-     * ----------------------------------------
-     * | items   |    | x  | x  |    |    |    |
-     * -----------------------------------------
+     * Nodes leaving the preference list keep the range until every node joining it has received the items,
+     * so a failed copy aborts the move and leaves the range where it was instead of losing it. Node changing
+     * it's role in the preference list drops the range of the old role right before receiving the new one,
+     * since a node keeps an item either as own item or as a replica
      *
-     * @return collection of latest replica items
+     * @param range    token range to move
+     * @param previous preference list of the range before the change
+     * @param next     preference list of the range after the change
+     * @param after    set of nodes after the change, nodes outside of it are skipped
      */
-    @NotNull
-    private static Collection<Item> getLatestReplicas() throws RemoteException {
-        Map<Integer, Item> replicas = new TreeMap<>();
-        for (Item replica : RemoteUtil.getSuccessorNode(node, node.getNodes()).getReplicas().values()) {
-            putItemIfNewer(replicas, replica);
-        }
-        Node predecessorNode = node;
-        for (int i = 1; i < Replication.N; i++) {
-            predecessorNode = RemoteUtil.getPredecessorNode(predecessorNode, node.getNodes());
-            for (Item item : predecessorNode.getItems().values()) {
-                putItemIfNewer(replicas, item);
+    private static void transferRange(@NotNull TokenRange range, @NotNull List<Integer> previous, @NotNull List<Integer> next,
+                                      @NotNull Map<Integer, String> after) throws RemoteException {
+        List<Item> items = new ArrayList<>(getLatestItems(range, previous).values());
+        for (int nodeId : next) {
+            boolean wasOriginal = previous.get(0) == nodeId;
+            boolean wasReplica = !wasOriginal && previous.contains(nodeId);
+            boolean isOriginal = next.get(0) == nodeId;
+            NodeServer nodeServer = getRemoteNode(nodeId, after);
+            if (isOriginal && !wasOriginal) {
+                if (wasReplica) {
+                    nodeServer.removeReplicaRange(range);
+                }
+                if (!items.isEmpty()) {
+                    nodeServer.updateItems(items);
+                }
             }
-            if (i != Replication.N - 1) {
-                for (Item replica : predecessorNode.getReplicas().values()) {
-                    int nodeIdForItem = RemoteUtil.getNodeIdForItem(replica.getKey(), node.getNodes());
-                    for (int j = 1; j < Replication.N; j++) {
-                        nodeIdForItem = RemoteUtil.getSuccessorNodeId(nodeIdForItem, node.getNodes());
-                        if (node.getId() == nodeIdForItem) {
-                            putItemIfNewer(replicas, replica);
-                            break;
-                        }
-                    }
+            if (!isOriginal && !wasReplica) {
+                if (wasOriginal) {
+                    nodeServer.removeItemRange(range);
+                }
+                if (!items.isEmpty()) {
+                    nodeServer.updateReplicas(items);
                 }
             }
         }
-        return replicas.values();
+        for (int nodeId : previous) {
+            if (next.contains(nodeId) || !after.containsKey(nodeId)) {
+                continue;
+            }
+            if (previous.get(0) == nodeId) {
+                getRemoteNode(nodeId, after).removeItemRange(range);
+            } else {
+                getRemoteNode(nodeId, after).removeReplicaRange(range);
+            }
+        }
+        logger.debug("Moved items=" + items.size() + " in range=" + range + " from nodeIds=" + previous + " to nodeIds=" + next);
     }
 
     /**
-     * Searches for latest version of items from neighboring nodes
-     * <p>
-     * Example:
-     * - assume Replication.N = 3
-     * - NX is the node to leave
-     * - x marks possible places of items for NX
-     * - y marks the items of NX we want to find
-     * <p>
-     * ----------------------------------------
-     * | nodes   | N1 | N2 | NX | N4 | N5 | N6 |
-     * ----------------------------------------
-     * | replica |    |    |    | x  | x  |    |
-     * ----------------------------------------
-     * | items   |    |    | y  |    |    |    |
-     * -----------------------------------------
+     * Searches for latest version of items in the token range from the nodes of it's preference list,
+     * the original node is read for items, the rest of the nodes for replicas, current node is skipped
+     * as a replica as it has nothing to share
      *
-     * @param startNode node to start search from
-     * @return collection of latest replica items
+     * @param range          token range to read
+     * @param preferenceList nodes holding the range, starting from the original node
+     * @return Map<ItemKey, Item> of latest items
      */
     @NotNull
-    private static Map<Integer, Item> getLatestItems(@NotNull Node startNode) throws RemoteException {
+    private static Map<Integer, Item> getLatestItems(@NotNull TokenRange range, @NotNull List<Integer> preferenceList) {
         Map<Integer, Item> items = new TreeMap<>();
-        int predecessorNodeId = RemoteUtil.getPredecessorNodeId(node, node.getNodes());
-        putItems(predecessorNodeId, items, startNode.getItems().values());
-        for (int i = 1; i < Replication.N; i++) {
-            Node nthSuccessor = RemoteUtil.getNthSuccessor(startNode, node.getNodes(), i);
-            putItems(predecessorNodeId, items, nthSuccessor.getReplicas().values());
+        for (int nodeId : preferenceList) {
+            boolean isOriginal = nodeId == preferenceList.get(0);
+            if (!isOriginal && nodeId == node.getId()) {
+                continue;
+            }
+            try {
+                for (Item item : isOriginal ? getRemoteNode(nodeId).getItemRange(range) : getRemoteNode(nodeId).getReplicaRange(range)) {
+                    putItemIfNewer(items, item);
+                }
+            } catch (RemoteException e) {
+                logger.warn("Failed to read range=" + range + " from nodeId=" + nodeId + ": " + e.getMessage());
+            }
         }
         return items;
     }
 
     /**
-     * Puts items into modifiable "items map" from "nodeItems" collection if they fall into responsibility of the current node
+     * Searches for latest version of replicas in the token ranges from the nodes of their preference lists concurrently
      *
-     * @param predecessorNodeId predecessor id of the current node
-     * @param items             modifiable map of items
-     * @param nodeItems         set of items
+     * @param ranges token ranges of predecessors, replicated by current node
+     * @return collection of latest replica items
      */
-    private static void putItems(int predecessorNodeId, @NotNull Map<Integer, Item> items, @NotNull Collection<Item> nodeItems) {
-        for (Item item : nodeItems) {
-            if (node.getId() < predecessorNodeId) {
-                // zero crossed (e.g. node 30 has successor 10, holds items 8 and 36)
-                if (item.getKey() <= node.getId() || item.getKey() > predecessorNodeId) {
-                    putItemIfNewer(items, item);
-                }
-            } else {
-                // zero NOT crossed (e.g. node 10 has successor 15, holds items 12 and 13)
-                if (item.getKey() <= node.getId() && item.getKey() > predecessorNodeId) {
-                    putItemIfNewer(items, item);
+    @NotNull
+    private static Collection<Item> getLatestReplicas(@NotNull List<TokenRange> ranges) {
+        final Map<Integer, String> nodes = new TreeMap<>(node.getNodes());
+        List<Callable<Map<Integer, Item>>> tasks = new ArrayList<>();
+        for (final TokenRange range : ranges) {
+            tasks.add(new Callable<Map<Integer, Item>>() {
+                @Override
+                public Map<Integer, Item> call() throws Exception {
+                    return getLatestItems(range, RemoteUtil.getPreferenceList(range.getEnd(), nodes, Replication.getN()));
                 }
-            }
+            });
+        }
+        Map<Integer, Item> replicas = new TreeMap<>();
+        for (Map<Integer, Item> result : MultithreadingUtil.executeAll(tasks)) {
+            replicas.putAll(result);
         }
+        return replicas.values();
     }
 
     /**
-     * Puts into "items map" new "item" value if it does not exist yet, or the existing version is lower
+     * Returns reference to remote node in the ring
+     *
+     * @param nodeId of the node
+     * @return reference to remote node
+     */
+    @NotNull
+    private static NodeServer getRemoteNode(int nodeId) {
+        return getRemoteNode(nodeId, node.getNodes());
+    }
+
+    /**
+     * Returns reference to remote node in the set of nodes
+     *
+     * @param nodeId of the node
+     * @param nodes  set of nodes containing the node
+     * @return reference to remote node
+     */
+    @NotNull
+    private static NodeServer getRemoteNode(int nodeId, @NotNull Map<Integer, String> nodes) {
+        return RemoteUtil.getRemoteNode(new Node(nodeId, nodes.get(nodeId)), NodeServer.class);
+    }
+
+    /**
+     * Puts into "items map" new "item" value if it does not exist yet, or resolves it with the existing version
      *
      * @param items modifiable map of items
      * @param item  item to test
+     * @see it.unitn.ds.util.VersionUtil
      */
     private static void putItemIfNewer(@NotNull Map<Integer, Item> items, @NotNull Item item) {
-        Item existingItem = items.get(item.getKey());
-        if (existingItem == null || existingItem.getVersion() < item.getVersion()) {
-            items.put(item.getKey(), item);
-        }
+        items.put(item.getKey(), VersionUtil.resolve(items.get(item.getKey()), item));
     }
 
     /**
      * When recovering the ring update it's items and replicas from neighboring nodes
-     * After that, recover items from local storage if the item does not exist in the ring or it's version is lower
+     * After that, recover items from local storage if the item does not exist in the ring or it's version is older or concurrent
+     * <p>
+     * Local storage is read in parallel chunks before it is overwritten by the items from neighboring nodes
+     *
+     * @see it.unitn.ds.util.RecoveryUtil
      */
     private static void recoverItems() throws RemoteException {
-        List<Item> localStorage = StorageUtil.readAll(node.getId());
-        Node successorNode = RemoteUtil.getSuccessorNode(node, node.getNodes());
-        List<Item> items = new ArrayList<>(getLatestItems(successorNode).values());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        List<Item> localStorage = StorageUtil.readAll(node.getId(), ServiceConfiguration.getMembershipParallelism());
+        logger.info("Read " + localStorage.size() + " items of local storage in " + stopwatch);
+        TokenRange range = RemoteUtil.getTokenRange(node.getId(), node.getNodes());
+        List<Integer> preferenceList = RemoteUtil.getPreferenceList(node.getId(), node.getNodes(), Replication.getN());
+        List<Item> items = new ArrayList<>(getLatestItems(range, preferenceList).values());
         RemoteUtil.getRemoteNode(node, NodeServer.class).updateItems(items);
         logger.debug("Recovered items=" + Arrays.toString(items.toArray()));
-        List<Item> replicas = new ArrayList<>(getLatestReplicas());
+        List<Item> replicas = new ArrayList<>(getLatestReplicas(RemoteUtil.getReplicaRanges(node.getId(), node.getNodes(), Replication.getN() - 1)));
         RemoteUtil.getRemoteNode(node, NodeServer.class).updateReplicas(replicas);
         logger.debug("Recovered replicas=" + Arrays.toString(replicas.toArray()));
-        for (Item item : localStorage) {
-            Node nodeForItem = RemoteUtil.getNodeForItem(item.getKey(), node.getNodes());
-            Item latestItems = getLatestNodeItem(nodeForItem, item.getKey());
-            if (latestItems == null || item.getVersion() > latestItems.getVersion()) {
-                RemoteUtil.getRemoteNode(nodeForItem, NodeServer.class).updateItems(Arrays.asList(item));
-                logger.debug("Recovered storage item=" + item + " to nodeForItem=" + nodeForItem);
-                for (int i = 1; i < Replication.N; i++) {
-                    Node nthSuccessor = RemoteUtil.getNthSuccessor(nodeForItem, node.getNodes(), i);
-                    RemoteUtil.getRemoteNode(nthSuccessor, NodeServer.class).updateReplicas(Arrays.asList(item));
-                    logger.debug("Recovered storage replica=" + item + " to nthSuccessor=" + nthSuccessor);
-                }
-            }
-        }
+        int recovered = RecoveryUtil.recover(node, localStorage);
+        logger.info("Recovered " + recovered + " of " + localStorage.size() + " items of local storage into the ring");
     }
 
     /**
-     * Get latest node item (it any)
-     *
-     * @param nodeForItem original node, responsible for the item
-     * @param itemKey     of the item
-     * @return latest item, null it none was found
+     * Announce JOIN operation to the neighbouring nodes in the ring, which share items and replicas with current node
+     * <p>
+     * The rest of the ring learns about the join by gossip
      */
-    @Nullable
-    private static Item getLatestNodeItem(Node nodeForItem, int itemKey) throws RemoteException {
-        Map<Integer, Item> items = new TreeMap<>();
-        for (Item item : nodeForItem.getItems().values()) {
-            putItemIfNewer(items, item);
-        }
-        for (int i = 1; i < Replication.N; i++) {
-            for (Item item : RemoteUtil.getNthSuccessor(nodeForItem, node.getNodes(), i).getReplicas().values()) {
-                putItemIfNewer(items, item);
-            }
-        }
-        return items.get(itemKey);
+    private static void announceJoin() throws RemoteException {
+        Set<Integer> neighbours = RemoteUtil.getNeighbourNodeIds(node.getId(), node.getNodes(), Replication.getN());
+        logger.debug("Announcing join to neighbours=" + Arrays.toString(neighbours.toArray()));
+        gossip(neighbours);
     }
 
     /**
-     * Announce JOIN operation to the nodes in the ring
+     * Announce LEAVE operation to the neighbouring nodes in the ring, which share items and replicas with current node
+     * <p>
+     * The rest of the ring learns about the leave by gossip
      */
-    private static void announceJoin() throws RemoteException {
-        logger.debug("Announcing join to nodes=" + Arrays.toString(node.getNodes().entrySet().toArray()));
-        for (Map.Entry<Integer, String> entry : node.getNodes().entrySet()) {
-            if (entry.getKey() != node.getId()) {
-                RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).addNode(node.getId(), node.getHost());
-                logger.trace("Announced join to nodeId=" + entry.getKey());
-            }
-        }
+    private static void announceLeave() throws RemoteException {
+        Set<Integer> neighbours = RemoteUtil.getNeighbourNodeIds(node.getId(), node.getNodes(), Replication.getN());
+        logger.debug("Announcing leave to neighbours=" + Arrays.toString(neighbours.toArray()));
+        GossipUtil.leave();
+        gossip(neighbours);
     }
 
     /**
-     * Announce LEAVE operation to the nodes in the ring
+     * Concurrently gossips with the nodes
+     *
+     * @param nodeIds of the nodes to gossip with
      */
-    private static void announceLeave() throws RemoteException {
-        logger.debug("Announcing leave to nodes=" + Arrays.toString(node.getNodes().entrySet().toArray()));
-        for (Map.Entry<Integer, String> entry : node.getNodes().entrySet()) {
-            if (entry.getKey() != node.getId()) {
-                RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).removeNode(node.getId());
-                logger.trace("Announced leave to nodeId=" + entry.getKey());
-            }
+    private static void gossip(@NotNull Set<Integer> nodeIds) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final int nodeId : nodeIds) {
+            final Node neighbour = new Node(nodeId, node.getNodes().get(nodeId));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    GossipUtil.gossip(neighbour);
+                    logger.trace("Announced to nodeId=" + nodeId);
+                    return null;
+                }
+            });
         }
+        MultithreadingUtil.executeAll(tasks);
     }
 
     /**
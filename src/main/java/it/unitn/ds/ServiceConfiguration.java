@@ -1,15 +1,29 @@
 package it.unitn.ds;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import it.unitn.ds.entity.Keyspace;
 import it.unitn.ds.entity.ReplicationTimeout;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Reads property file with service configuration
+ * <p>
+ * Some of the parameters can be changed at runtime, every applied change increases version of the configuration
+ * and replaces all the parameters at once
  */
 public abstract class ServiceConfiguration {
 
@@ -17,49 +31,509 @@ public abstract class ServiceConfiguration {
 
     public static final String CONFIGURATION_FILE = "service.properties";
 
-    private static int rmiPort;
+    /**
+     * Parameters, which can be changed at runtime, the rest of the parameters are read once on start up
+     */
+    public static final Set<String> RUNTIME_KEYS = ImmutableSet.of(
+            "replication-timeout-value", "replication-timeout-unit", "replication-w", "replication-r", "replication-n",
+            "replication-conflict-resolution", "coordinator-parallelism", "read-cache-max-bytes", "read-cache-ttl",
+            "admission-limit-read", "admission-limit-write", "admission-limit-scan", "admission-latency-target",
+            "replica-timeout-percentile", "replica-timeout-min");
 
-    private static ReplicationTimeout replicationTimeout;
+    private static Properties properties = new Properties();
 
-    private static int replicationW;
+    private static volatile int version = 1;
 
-    private static int replicationR;
-
-    private static int replicationN;
+    private static volatile Settings settings;
 
     static {
         try {
-            Properties properties = new Properties();
-            properties.load(new FileInputStream(CONFIGURATION_FILE));
-            rmiPort = Integer.parseInt(properties.getProperty("rmi-port"));
-            int replicationTimeoutValue = Integer.parseInt(properties.getProperty("replication-timeout-value"));
-            String replicationTimeoutUnit = properties.getProperty("replication-timeout-unit");
-            replicationTimeout = new ReplicationTimeout(replicationTimeoutValue, replicationTimeoutUnit);
-            replicationW = Integer.parseInt(properties.getProperty("replication-w"));
-            replicationR = Integer.parseInt(properties.getProperty("replication-r"));
-            replicationN = Integer.parseInt(properties.getProperty("replication-n"));
+            properties = read();
+            settings = new Settings(properties);
         } catch (IOException e) {
             logger.error("Failed to load service configuration!", e);
         }
     }
 
+    /**
+     * Returns version of the configuration, increased by every change applied at runtime
+     */
+    public static int getVersion() {
+        return version;
+    }
+
+    /**
+     * Applies changes of the parameters at runtime, the change is applied as a whole or not at all
+     * <p>
+     * Only RUNTIME_KEYS can be changed, the rest of the parameters are read once on start up
+     *
+     * @param changes Map<Key, Value> of new values of the parameters
+     * @return Map<Key, Value> of the parameters, which have actually changed
+     * @throws IllegalArgumentException if the key cannot be changed at runtime or the new values are not valid
+     */
+    @NotNull
+    public static synchronized Map<String, String> apply(@NotNull Map<String, String> changes) {
+        Map<String, String> applied = new TreeMap<>();
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            if (!RUNTIME_KEYS.contains(entry.getKey())) {
+                throw new IllegalArgumentException("Parameter " + entry.getKey() + " cannot be changed at runtime");
+            }
+            if (!entry.getValue().equals(properties.getProperty(entry.getKey()))) {
+                applied.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (applied.isEmpty()) {
+            return applied;
+        }
+        Properties updated = new Properties();
+        updated.putAll(properties);
+        updated.putAll(applied);
+        Settings updatedSettings;
+        try {
+            updatedSettings = new Settings(updated);
+            validate(updatedSettings);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid configuration changes=" + applied + ": " + e.getMessage(), e);
+        }
+        settings = updatedSettings;
+        for (Map.Entry<String, String> entry : applied.entrySet()) {
+            logger.info("Configuration version=" + (version + 1) + " changed " + entry.getKey() + " from " + properties.getProperty(entry.getKey()) + " to " + entry.getValue());
+        }
+        properties = updated;
+        version++;
+        return applied;
+    }
+
+    /**
+     * Reads the configuration file again and returns the parameters, which differ from the current ones
+     * <p>
+     * Changed parameters, which cannot be changed at runtime, are skipped with warning
+     *
+     * @return Map<Key, Value> of changed RUNTIME_KEYS to be applied
+     */
+    @NotNull
+    public static synchronized Map<String, String> readChanges() throws IOException {
+        Map<String, String> changes = new TreeMap<>();
+        for (Map.Entry<Object, Object> entry : read().entrySet()) {
+            String key = (String) entry.getKey();
+            String value = (String) entry.getValue();
+            if (!value.equals(properties.getProperty(key))) {
+                if (RUNTIME_KEYS.contains(key)) {
+                    changes.put(key, value);
+                } else {
+                    logger.warn("Parameter " + key + " cannot be changed at runtime, restart is required");
+                }
+            }
+        }
+        return changes;
+    }
+
+    @NotNull
+    private static Properties read() throws IOException {
+        Properties properties = new Properties();
+        try (FileInputStream inputStream = new FileInputStream(CONFIGURATION_FILE)) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    /**
+     * Reads the keyspaces, every keyspace must maintain formula [ W + R > N ], N must not exceed Replication N
+     * and ranges of the keyspaces must not overlap
+     *
+     * @param properties   to read the keyspaces from
+     * @param replicationN global Replication N, default and maximum N of the keyspaces
+     * @param replicationR global Replication R, default R of the keyspaces
+     * @param replicationW global Replication W, default W of the keyspaces
+     * @return keyspaces sorted by the first item key
+     */
+    @NotNull
+    private static List<Keyspace> loadKeyspaces(@NotNull Properties properties, int replicationN, int replicationR, int replicationW) {
+        List<Keyspace> keyspaces = new ArrayList<>();
+        for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(properties.getProperty("keyspaces", ""))) {
+            String prefix = "keyspace." + name + ".";
+            int start = Integer.parseInt(properties.getProperty(prefix + "start"));
+            int size = Integer.parseInt(properties.getProperty(prefix + "size"));
+            int n = Integer.parseInt(properties.getProperty(prefix + "replication-n", String.valueOf(replicationN)));
+            int r = Integer.parseInt(properties.getProperty(prefix + "replication-r", String.valueOf(Math.min(replicationR, n))));
+            int w = Integer.parseInt(properties.getProperty(prefix + "replication-w", String.valueOf(Math.min(replicationW, n))));
+            boolean readCache = Boolean.parseBoolean(properties.getProperty(prefix + "read-cache", "true"));
+            Compression compression = Compression.valueOf(properties.getProperty(prefix + "compression", properties.getProperty("compression")));
+            int maxValueLength = Integer.parseInt(properties.getProperty(prefix + "max-value-length", "0"));
+            int maxRequestsPerSecond = Integer.parseInt(properties.getProperty(prefix + "max-requests-per-second", "0"));
+            if (start <= 0 || size <= 0 || (long) start + size - 1 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Keyspace " + name + " must have positive start and size within the range of item keys");
+            }
+            if (n <= 0 || w <= 0 || r <= 0 || w > n || r > n || w + r <= n) {
+                throw new IllegalArgumentException("Keyspace " + name + " must maintain formula [ 0 < W, R <= N < W + R ]");
+            }
+            if (maxValueLength < 0 || maxRequestsPerSecond < 0) {
+                throw new IllegalArgumentException("Keyspace " + name + " quotas must not be negative");
+            }
+            keyspaces.add(new Keyspace(name, start, size, n, r, w, readCache, compression, maxValueLength, maxRequestsPerSecond));
+        }
+        Collections.sort(keyspaces, new Comparator<Keyspace>() {
+            @Override
+            public int compare(Keyspace o1, Keyspace o2) {
+                return Integer.compare(o1.getStart(), o2.getStart());
+            }
+        });
+        for (int i = 1; i < keyspaces.size(); i++) {
+            if (keyspaces.get(i - 1).getEnd() >= keyspaces.get(i).getStart()) {
+                throw new IllegalArgumentException("Keyspaces " + keyspaces.get(i - 1).getName() + " and " + keyspaces.get(i).getName() + " overlap");
+            }
+        }
+        return Collections.unmodifiableList(keyspaces);
+    }
+
+    /**
+     * Checks replication parameters maintain formula [ W + R > N ], quorums do not exceed N
+     * and N of the keyspaces does not exceed N, so invalid changes are rejected before they are published
+     *
+     * @param settings to be published
+     * @throws IllegalArgumentException if the parameters are not valid
+     */
+    private static void validate(@NotNull Settings settings) {
+        int replicationN = settings.replicationN;
+        int replicationR = settings.replicationR;
+        int replicationW = settings.replicationW;
+        if (replicationN <= 0 || replicationW <= 0 || replicationR <= 0 || replicationW > replicationN || replicationR > replicationN) {
+            throw new IllegalArgumentException("Replication parameters must maintain formula [ 0 < W, R <= N ]");
+        }
+        if (replicationW + replicationR <= replicationN) {
+            throw new IllegalArgumentException("Replication parameters must maintain formula [ W + R > N ]");
+        }
+        if (settings.coordinatorParallelism <= 0) {
+            throw new IllegalArgumentException("Coordinator parallelism must be positive integer");
+        }
+        for (Keyspace keyspace : settings.keyspaces) {
+            if (keyspace.getN() > replicationN) {
+                throw new IllegalArgumentException("Replication N must not be less than N=" + keyspace.getN() + " of keyspace " + keyspace.getName());
+            }
+        }
+    }
+
     public static int getRmiPort() {
-        return rmiPort;
+        return settings.rmiPort;
+    }
+
+    public static String getZone() {
+        return settings.zone;
     }
 
     public static ReplicationTimeout getReplicationTimeout() {
-        return replicationTimeout;
+        return settings.replicationTimeout;
     }
 
     public static int getReplicationW() {
-        return replicationW;
+        return settings.replicationW;
     }
 
     public static int getReplicationR() {
-        return replicationR;
+        return settings.replicationR;
     }
 
     public static int getReplicationN() {
-        return replicationN;
+        return settings.replicationN;
+    }
+
+    public static ConflictResolution getReplicationConflictResolution() {
+        return settings.replicationConflictResolution;
+    }
+
+    public static int getReplicationBatchSize() {
+        return settings.replicationBatchSize;
+    }
+
+    public static long getReplicationBatchLinger() {
+        return settings.replicationBatchLinger;
+    }
+
+    public static List<Keyspace> getKeyspaces() {
+        return settings.keyspaces;
+    }
+
+    public static int getKeyHashRange() {
+        return settings.keyHashRange;
+    }
+
+    public static int getHashedKeys() {
+        return settings.hashedKeys;
+    }
+
+    public static long getGossipInterval() {
+        return settings.gossipInterval;
+    }
+
+    public static int getGossipFanout() {
+        return settings.gossipFanout;
+    }
+
+    public static double getGossipPhiThreshold() {
+        return settings.gossipPhiThreshold;
+    }
+
+    public static long getGossipCleanup() {
+        return settings.gossipCleanup;
+    }
+
+    public static int getMembershipParallelism() {
+        return settings.membershipParallelism;
+    }
+
+    public static int getRecoveryBatchSize() {
+        return settings.recoveryBatchSize;
+    }
+
+    public static int getCoordinatorParallelism() {
+        return settings.coordinatorParallelism;
+    }
+
+    public static ExecutorMode getExecutorMode() {
+        return settings.executorMode;
+    }
+
+    public static int getScanPageSize() {
+        return settings.scanPageSize;
+    }
+
+    public static int getLoadBatchSize() {
+        return settings.loadBatchSize;
+    }
+
+    public static long getRebalanceSampleInterval() {
+        return settings.rebalanceSampleInterval;
+    }
+
+    public static long getRebalanceMoveInterval() {
+        return settings.rebalanceMoveInterval;
+    }
+
+    public static double getRebalanceTolerance() {
+        return settings.rebalanceTolerance;
+    }
+
+    public static long getReadCacheMaxBytes() {
+        return settings.readCacheMaxBytes;
+    }
+
+    public static long getReadCacheTtl() {
+        return settings.readCacheTtl;
+    }
+
+    public static long getClientTopologyTtl() {
+        return settings.clientTopologyTtl;
+    }
+
+    public static Compression getCompression() {
+        return settings.compression;
+    }
+
+    public static int getCompressionThreshold() {
+        return settings.compressionThreshold;
+    }
+
+    public static double getBloomFilterFpp() {
+        return settings.bloomFilterFpp;
+    }
+
+    public static long getBloomFilterTtl() {
+        return settings.bloomFilterTtl;
+    }
+
+    public static long getExpiryInterval() {
+        return settings.expiryInterval;
+    }
+
+    public static int getExpiryBatchSize() {
+        return settings.expiryBatchSize;
+    }
+
+    public static long getTombstoneGrace() {
+        return settings.tombstoneGrace;
+    }
+
+    public static int getAdmissionLimitRead() {
+        return settings.admissionLimitRead;
+    }
+
+    public static int getAdmissionLimitWrite() {
+        return settings.admissionLimitWrite;
+    }
+
+    public static int getAdmissionLimitScan() {
+        return settings.admissionLimitScan;
+    }
+
+    public static long getAdmissionLatencyTarget() {
+        return settings.admissionLatencyTarget;
+    }
+
+    public static int getCircuitBreakerFailures() {
+        return settings.circuitBreakerFailures;
+    }
+
+    public static long getCircuitBreakerOpenTime() {
+        return settings.circuitBreakerOpenTime;
+    }
+
+    public static double getReplicaTimeoutPercentile() {
+        return settings.replicaTimeoutPercentile;
+    }
+
+    public static long getReplicaTimeoutMin() {
+        return settings.replicaTimeoutMin;
+    }
+
+    /**
+     * Immutable snapshot of all the parameters, published through a single volatile reference,
+     * so concurrent requests never see a mix of old and new parameters of the same change
+     */
+    private static final class Settings {
+
+        private final int rmiPort;
+
+        private final String zone;
+
+        private final ReplicationTimeout replicationTimeout;
+
+        private final int replicationW;
+
+        private final int replicationR;
+
+        private final int replicationN;
+
+        private final ConflictResolution replicationConflictResolution;
+
+        private final int replicationBatchSize;
+
+        private final long replicationBatchLinger;
+
+        private final List<Keyspace> keyspaces;
+
+        private final int keyHashRange;
+
+        /**
+         * Count of item keys from 1 to key hash range outside of the keyspaces
+         */
+        private final int hashedKeys;
+
+        private final long gossipInterval;
+
+        private final int gossipFanout;
+
+        private final double gossipPhiThreshold;
+
+        private final long gossipCleanup;
+
+        private final int membershipParallelism;
+
+        private final int recoveryBatchSize;
+
+        private final int coordinatorParallelism;
+
+        private final ExecutorMode executorMode;
+
+        private final int scanPageSize;
+
+        private final int loadBatchSize;
+
+        private final long rebalanceSampleInterval;
+
+        private final long rebalanceMoveInterval;
+
+        private final double rebalanceTolerance;
+
+        private final long readCacheMaxBytes;
+
+        private final long readCacheTtl;
+
+        private final long clientTopologyTtl;
+
+        private final Compression compression;
+
+        private final int compressionThreshold;
+
+        private final double bloomFilterFpp;
+
+        private final long expiryInterval;
+
+        private final int expiryBatchSize;
+
+        private final long tombstoneGrace;
+
+        private final int admissionLimitRead;
+
+        private final int admissionLimitWrite;
+
+        private final int admissionLimitScan;
+
+        private final long admissionLatencyTarget;
+
+        private final int circuitBreakerFailures;
+
+        private final long circuitBreakerOpenTime;
+
+        private final double replicaTimeoutPercentile;
+
+        private final long replicaTimeoutMin;
+
+        private final long bloomFilterTtl;
+
+        private Settings(@NotNull Properties properties) {
+            rmiPort = Integer.parseInt(properties.getProperty("rmi-port"));
+            zone = properties.getProperty("zone", "").trim();
+            int replicationTimeoutValue = Integer.parseInt(properties.getProperty("replication-timeout-value"));
+            String replicationTimeoutUnit = properties.getProperty("replication-timeout-unit");
+            replicationTimeout = new ReplicationTimeout(replicationTimeoutValue, replicationTimeoutUnit);
+            replicationW = Integer.parseInt(properties.getProperty("replication-w"));
+            replicationR = Integer.parseInt(properties.getProperty("replication-r"));
+            replicationN = Integer.parseInt(properties.getProperty("replication-n"));
+            replicationConflictResolution = ConflictResolution.valueOf(properties.getProperty("replication-conflict-resolution"));
+            replicationBatchSize = Integer.parseInt(properties.getProperty("replication-batch-size"));
+            replicationBatchLinger = Long.parseLong(properties.getProperty("replication-batch-linger"));
+            keyspaces = loadKeyspaces(properties, replicationN, replicationR, replicationW);
+            keyHashRange = Integer.parseInt(properties.getProperty("key-hash-range"));
+            int hashedKeys = keyHashRange;
+            for (Keyspace keyspace : keyspaces) {
+                hashedKeys -= Math.max(0, Math.min(keyspace.getEnd(), keyHashRange) - keyspace.getStart() + 1);
+            }
+            if (hashedKeys <= 0) {
+                throw new IllegalArgumentException("Keyspaces must leave item keys from 1 to key-hash-range for string and binary keys");
+            }
+            this.hashedKeys = hashedKeys;
+            gossipInterval = Long.parseLong(properties.getProperty("gossip-interval"));
+            gossipFanout = Integer.parseInt(properties.getProperty("gossip-fanout"));
+            gossipPhiThreshold = Double.parseDouble(properties.getProperty("gossip-phi-threshold"));
+            gossipCleanup = Long.parseLong(properties.getProperty("gossip-cleanup"));
+            membershipParallelism = Integer.parseInt(properties.getProperty("membership-parallelism"));
+            recoveryBatchSize = Integer.parseInt(properties.getProperty("recovery-batch-size"));
+            coordinatorParallelism = Integer.parseInt(properties.getProperty("coordinator-parallelism"));
+            executorMode = ExecutorMode.valueOf(properties.getProperty("executor-mode"));
+            scanPageSize = Integer.parseInt(properties.getProperty("scan-page-size"));
+            loadBatchSize = Integer.parseInt(properties.getProperty("load-batch-size"));
+            rebalanceSampleInterval = Long.parseLong(properties.getProperty("rebalance-sample-interval"));
+            rebalanceMoveInterval = Long.parseLong(properties.getProperty("rebalance-move-interval"));
+            rebalanceTolerance = Double.parseDouble(properties.getProperty("rebalance-tolerance"));
+            readCacheMaxBytes = Long.parseLong(properties.getProperty("read-cache-max-bytes"));
+            readCacheTtl = Long.parseLong(properties.getProperty("read-cache-ttl"));
+            clientTopologyTtl = Long.parseLong(properties.getProperty("client-topology-ttl"));
+            compression = Compression.valueOf(properties.getProperty("compression"));
+            compressionThreshold = Integer.parseInt(properties.getProperty("compression-threshold"));
+            bloomFilterFpp = Double.parseDouble(properties.getProperty("bloom-filter-fpp"));
+            bloomFilterTtl = Long.parseLong(properties.getProperty("bloom-filter-ttl"));
+            expiryInterval = Long.parseLong(properties.getProperty("expiry-interval"));
+            expiryBatchSize = Integer.parseInt(properties.getProperty("expiry-batch-size"));
+            tombstoneGrace = Long.parseLong(properties.getProperty("tombstone-grace"));
+            admissionLimitRead = Integer.parseInt(properties.getProperty("admission-limit-read"));
+            admissionLimitWrite = Integer.parseInt(properties.getProperty("admission-limit-write"));
+            admissionLimitScan = Integer.parseInt(properties.getProperty("admission-limit-scan"));
+            admissionLatencyTarget = Long.parseLong(properties.getProperty("admission-latency-target"));
+            circuitBreakerFailures = Integer.parseInt(properties.getProperty("circuit-breaker-failures"));
+            circuitBreakerOpenTime = Long.parseLong(properties.getProperty("circuit-breaker-open-time"));
+            replicaTimeoutPercentile = Double.parseDouble(properties.getProperty("replica-timeout-percentile"));
+            replicaTimeoutMin = Long.parseLong(properties.getProperty("replica-timeout-min"));
+    
+        }
     }
 }
@@ -1,66 +1,315 @@
 package it.unitn.ds.entity;
 
 import com.google.common.base.MoreObjects;
+import it.unitn.ds.Compression;
+import it.unitn.ds.util.CompressionUtil;
+import it.unitn.ds.util.KeyUtil;
+import it.unitn.ds.util.KeyspaceUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * Items are put in the ring under the responsible node (NodeId >= itemKey) and replicated to N successors
+ * <p>
+ * Items of string and binary keys keep the original raw key next to the item key hashed from it
+ * <p>
+ * Value and siblings are compressed in serialized form above the configured threshold
  *
  * @see it.unitn.ds.entity.Node
+ * @see it.unitn.ds.entity.VectorClock
  * @see it.unitn.ds.Replication
  */
 public final class Item implements Serializable {
 
+    /**
+     * Approximate memory used by the item object, it's clock and collections, excluding strings
+     */
+    private static final int OVERHEAD_BYTES = 128;
+
     /**
      * Positive integer to determine responsible node in the ring
      */
     private final int key;
 
+    /**
+     * Original string or binary key, which the item key has been hashed from, null if the item is addressed by item key
+     *
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    @Nullable
+    private final byte[] rawKey;
+
     /**
      * Item value without commas
      */
     @NotNull
-    private String value;
+    private transient String value;
 
     /**
-     * Used in replication to determine the latest item, starts from 1 and up
+     * Values written concurrently with the current value, empty unless conflict resolution keeps siblings
+     *
+     * @see it.unitn.ds.ConflictResolution
      */
-    private int version;
+    @NotNull
+    private transient List<String> siblings;
 
-    public Item(int key, @NotNull String value, int version) {
+    /**
+     * Used in replication to determine the latest item or detect concurrent updates
+     */
+    @NotNull
+    private VectorClock clock;
+
+    /**
+     * Milliseconds since epoch of the last update, never goes backwards for the same item
+     * <p>
+     * Used to pick the winner among concurrent updates
+     */
+    private long timestamp;
+
+    /**
+     * Milliseconds since epoch after which the item is not returned to the client, 0 if the item never expires
+     */
+    private long expiresAt;
+
+    /**
+     * Marks expired or deleted item, which is kept without value to supersede older versions of the item on replicas and in storage
+     */
+    private boolean tombstone;
+
+    public Item(int key, @Nullable byte[] rawKey, @NotNull String value, @NotNull VectorClock clock, long timestamp, @NotNull List<String> siblings, long expiresAt, boolean tombstone) {
         this.key = key;
+        this.rawKey = rawKey;
         this.value = value;
-        this.version = version;
+        this.clock = clock;
+        this.timestamp = timestamp;
+        this.siblings = new ArrayList<>(siblings);
+        this.expiresAt = expiresAt;
+        this.tombstone = tombstone;
+    }
+
+    public Item(int key, @NotNull String value, @NotNull VectorClock clock, long timestamp, @NotNull List<String> siblings, long expiresAt, boolean tombstone) {
+        this(key, null, value, clock, timestamp, siblings, expiresAt, tombstone);
+    }
+
+    public Item(int key, @NotNull String value, @NotNull VectorClock clock, long timestamp, @NotNull List<String> siblings) {
+        this(key, value, clock, timestamp, siblings, 0, false);
+    }
+
+    public Item(int key, @NotNull String value, @NotNull VectorClock clock, long timestamp) {
+        this(key, value, clock, timestamp, new ArrayList<String>());
+    }
+
+    public Item(@NotNull Item item) {
+        this(item, item.rawKey);
+    }
+
+    /**
+     * Copies the item under another raw key
+     *
+     * @param item   to copy
+     * @param rawKey of the copy, null if the copy is addressed by item key
+     */
+    public Item(@NotNull Item item, @Nullable byte[] rawKey) {
+        this(item.key, rawKey, item.value, item.clock, item.timestamp, item.siblings, item.expiresAt, item.tombstone);
     }
 
-    public Item(int key, @NotNull String value) {
-        this(key, value, 1);
+    /**
+     * Creates new item coordinated by the node
+     *
+     * @param key    of the item
+     * @param rawKey of the item, null if the item is addressed by item key
+     * @param value  of the item
+     * @param nodeId of the coordinator node
+     */
+    public Item(int key, @Nullable byte[] rawKey, @NotNull String value, int nodeId) {
+        this(key, rawKey, value, new VectorClock().increment(nodeId), System.currentTimeMillis(), new ArrayList<String>(), 0, false);
     }
 
     /**
-     * Updates value and increase version by 1
+     * Updates value, resolves siblings and increases counter of the coordinator node by 1
      *
-     * @param value new item value
+     * @param value  new item value
+     * @param nodeId of the coordinator node
      */
-    public void update(@NotNull String value) {
+    public void update(@NotNull String value, int nodeId) {
         this.value = value;
-        this.version++;
+        this.siblings.clear();
+        this.clock = clock.increment(nodeId);
+        this.timestamp = Math.max(System.currentTimeMillis(), timestamp + 1);
+        this.expiresAt = 0;
+        this.tombstone = false;
+    }
+
+    /**
+     * Replaces the item with tombstone and increases counter of the coordinator node by 1,
+     * so the deletion supersedes all versions of the item seen by the coordinator
+     *
+     * @param nodeId of the coordinator node
+     */
+    public void delete(int nodeId) {
+        this.value = "";
+        this.siblings.clear();
+        this.clock = clock.increment(nodeId);
+        this.timestamp = Math.max(System.currentTimeMillis(), timestamp + 1);
+        this.expiresAt = 0;
+        this.tombstone = true;
+    }
+
+    /**
+     * Sets the item to expire after time to live since the last update
+     *
+     * @param ttl milliseconds to live
+     */
+    public void expireAfter(long ttl) {
+        this.expiresAt = timestamp + ttl;
+    }
+
+    /**
+     * Returns tombstone of the item, which has the same version, but no value
+     *
+     * @return new tombstone item
+     */
+    @NotNull
+    public Item toTombstone() {
+        return new Item(key, rawKey, "", clock, timestamp, new ArrayList<String>(), expiresAt, true);
+    }
+
+    /**
+     * Tells if the item has expired by now
+     *
+     * @param now milliseconds since epoch
+     * @return true if the item has time to live, which is over
+     */
+    public boolean isExpired(long now) {
+        return expiresAt > 0 && expiresAt <= now;
+    }
+
+    /**
+     * Tells if the item can be returned to the client
+     *
+     * @return false if the item is tombstone or has expired, true otherwise
+     */
+    public boolean isLive() {
+        return !tombstone && !isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Milliseconds since epoch when the item stopped being live, used to compact tombstones after the grace period
+     *
+     * @return expiry time of expired item, time of the last update otherwise
+     */
+    public long getDeadSince() {
+        return expiresAt > 0 ? expiresAt : timestamp;
     }
 
     public int getKey() {
         return key;
     }
 
+    @Nullable
+    public byte[] getRawKey() {
+        return rawKey;
+    }
+
+    /**
+     * Tells if the item is addressed by the raw key
+     *
+     * @param rawKey of the request
+     * @return true if the item has the same raw key, false if the item has another raw key or none
+     */
+    public boolean hasRawKey(@NotNull byte[] rawKey) {
+        return Arrays.equals(this.rawKey, rawKey);
+    }
+
     @NotNull
     public String getValue() {
         return value;
     }
 
+    @NotNull
+    public List<String> getSiblings() {
+        return siblings;
+    }
+
+    @NotNull
+    public VectorClock getClock() {
+        return clock;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isTombstone() {
+        return tombstone;
+    }
+
+    /**
+     * Approximate memory used by the item, it's raw key, clock, value and siblings
+     *
+     * @return size in bytes
+     */
+    public int getSizeInBytes() {
+        int size = OVERHEAD_BYTES + 2 * value.length() + 32 * clock.getCounters().size() + (rawKey == null ? 0 : rawKey.length);
+        for (String sibling : siblings) {
+            size += 2 * sibling.length();
+        }
+        return size;
+    }
+
+    /**
+     * Total amount of updates of the item, starts from 1 and up
+     *
+     * @return sum of the vector clock counters
+     */
     public int getVersion() {
-        return version;
+        return clock.getSum();
+    }
+
+    private void writeObject(@NotNull ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Compression compression = KeyspaceUtil.getCompression(key);
+        writeValue(out, value, compression);
+        out.writeInt(siblings.size());
+        for (String sibling : siblings) {
+            writeValue(out, sibling, compression);
+        }
+    }
+
+    private void readObject(@NotNull ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        value = readValue(in);
+        int count = in.readInt();
+        siblings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            siblings.add(readValue(in));
+        }
+    }
+
+    private static void writeValue(@NotNull ObjectOutputStream out, @NotNull String value, @NotNull Compression compression) throws IOException {
+        byte[] encoded = CompressionUtil.encode(value, compression);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    @NotNull
+    private static String readValue(@NotNull ObjectInputStream in) throws IOException {
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        return CompressionUtil.decode(encoded);
     }
 
     @Override
@@ -72,7 +321,7 @@ public final class Item implements Serializable {
             Item object = (Item) o;
 
             return Objects.equals(key, object.key) &&
-                    Objects.equals(version, object.version);
+                    Objects.equals(clock, object.clock);
         }
 
         return false;
@@ -80,15 +329,22 @@ public final class Item implements Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, version);
+        return Objects.hash(key, clock);
     }
 
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
+                .omitNullValues()
                 .add("key", key)
+                .add("rawKey", rawKey == null ? null : KeyUtil.toString(rawKey))
                 .add("value", value)
-                .add("version", version)
+                .add("siblings", Arrays.toString(siblings.toArray()))
+                .add("version", getVersion())
+                .add("clock", Arrays.toString(clock.getCounters().entrySet().toArray()))
+                .add("timestamp", timestamp)
+                .add("expiresAt", expiresAt)
+                .add("tombstone", tombstone)
                 .toString();
     }
 }
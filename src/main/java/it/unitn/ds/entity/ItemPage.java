@@ -0,0 +1,82 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of the range scan, items are sorted by item key
+ * <p>
+ * Next page is requested from the continuation key up to the same end of the range
+ *
+ * @see it.unitn.ds.rmi.NodeClient
+ */
+public final class ItemPage implements Serializable {
+
+    @NotNull
+    private final List<Item> items;
+
+    /**
+     * First item key of the next page, null if the range has been scanned completely
+     */
+    @Nullable
+    private final Integer nextKey;
+
+    public ItemPage(@NotNull List<Item> items, @Nullable Integer nextKey) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextKey = nextKey;
+    }
+
+    /**
+     * Tells if there are no more pages in the range
+     *
+     * @return true if continuation key is null, false otherwise
+     */
+    public boolean isLast() {
+        return nextKey == null;
+    }
+
+    @NotNull
+    public List<Item> getItems() {
+        return items;
+    }
+
+    @Nullable
+    public Integer getNextKey() {
+        return nextKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof ItemPage) {
+            ItemPage object = (ItemPage) o;
+
+            return Objects.equals(items, object.items) &&
+                    Objects.equals(nextKey, object.nextKey);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(items, nextKey);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("items", Arrays.toString(items.toArray()))
+                .add("nextKey", nextKey)
+                .toString();
+    }
+}
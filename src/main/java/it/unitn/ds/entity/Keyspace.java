@@ -0,0 +1,192 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import it.unitn.ds.Compression;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Named range of item keys with it's own replication, cache, storage settings and quotas,
+ * so hot and durable data are served by the same ring with different guarantees
+ * <p>
+ * Clients address items of the keyspace by keys from 0 to size - 1, nodes keep them under keys from start,
+ * keyspaces do not overlap, keys outside of the keyspaces belong to the default keyspace with the global settings
+ *
+ * @see it.unitn.ds.util.KeyspaceUtil
+ * @see it.unitn.ds.ServiceConfiguration
+ */
+public final class Keyspace implements Serializable {
+
+    @NotNull
+    private final String name;
+
+    /**
+     * First item key of the keyspace in the ring, inclusively
+     */
+    private final int start;
+
+    /**
+     * Count of item keys of the keyspace
+     */
+    private final int size;
+
+    /**
+     * Count of nodes storing every item, at most global Replication N
+     */
+    private final int n;
+
+    private final int r;
+
+    private final int w;
+
+    /**
+     * True if coordinators cache items of the keyspace
+     */
+    private final boolean readCache;
+
+    /**
+     * Codec of values of the keyspace in the storage and in transfers between the nodes
+     */
+    @NotNull
+    private final Compression compression;
+
+    /**
+     * Maximum length of the value, 0 if unlimited
+     */
+    private final int maxValueLength;
+
+    /**
+     * Maximum count of requests per second admitted by one coordinator, 0 if unlimited
+     */
+    private final int maxRequestsPerSecond;
+
+    public Keyspace(@NotNull String name, int start, int size, int n, int r, int w, boolean readCache,
+                    @NotNull Compression compression, int maxValueLength, int maxRequestsPerSecond) {
+        this.name = name;
+        this.start = start;
+        this.size = size;
+        this.n = n;
+        this.r = r;
+        this.w = w;
+        this.readCache = readCache;
+        this.compression = compression;
+        this.maxValueLength = maxValueLength;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Returns item key in the ring for the key of the keyspace
+     *
+     * @param key of the item in the keyspace
+     * @return item key in the ring
+     * @throws IllegalArgumentException if the key is outside of [ 0, size )
+     */
+    public int getItemKey(int key) {
+        if (key < 0 || key >= size) {
+            throw new IllegalArgumentException("Key=" + key + " is outside of keyspace=" + name + " of size=" + size);
+        }
+        return start + key;
+    }
+
+    /**
+     * Tells if the item key in the ring belongs to the keyspace
+     */
+    public boolean contains(int itemKey) {
+        return itemKey >= start && itemKey - start < size;
+    }
+
+    /**
+     * Returns last item key of the keyspace in the ring, inclusively
+     */
+    public int getEnd() {
+        return start + (size - 1);
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getR() {
+        return r;
+    }
+
+    public int getW() {
+        return w;
+    }
+
+    public boolean isReadCache() {
+        return readCache;
+    }
+
+    @NotNull
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof Keyspace) {
+            Keyspace object = (Keyspace) o;
+
+            return Objects.equals(name, object.name) &&
+                    Objects.equals(start, object.start) &&
+                    Objects.equals(size, object.size) &&
+                    Objects.equals(n, object.n) &&
+                    Objects.equals(r, object.r) &&
+                    Objects.equals(w, object.w) &&
+                    Objects.equals(readCache, object.readCache) &&
+                    Objects.equals(compression, object.compression) &&
+                    Objects.equals(maxValueLength, object.maxValueLength) &&
+                    Objects.equals(maxRequestsPerSecond, object.maxRequestsPerSecond);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, start, size, n, r, w, readCache, compression, maxValueLength, maxRequestsPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", name)
+                .add("start", start)
+                .add("size", size)
+                .add("n", n)
+                .add("r", r)
+                .add("w", w)
+                .add("readCache", readCache)
+                .add("compression", compression)
+                .add("maxValueLength", maxValueLength)
+                .add("maxRequestsPerSecond", maxRequestsPerSecond)
+                .toString();
+    }
+}
@@ -0,0 +1,106 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import it.unitn.ds.NodeState;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Gossiped membership entry of the node in the ring
+ * <p>
+ * Entry with the higher heartbeat always supersedes the one with lower heartbeat for the same node
+ *
+ * @see it.unitn.ds.util.GossipUtil
+ */
+public final class Member implements Serializable {
+
+    /**
+     * Positive integer to determine position in the ring
+     */
+    private final int id;
+
+    /**
+     * IP address of the server node
+     */
+    @NotNull
+    private final String host;
+
+    /**
+     * Increased by the node itself on every gossip round, starts from the time the node was (re)started
+     */
+    private final long heartbeat;
+
+    /**
+     * CONNECTED if the node is in the ring, DISCONNECTED if it has left the ring
+     */
+    @NotNull
+    private final NodeState state;
+
+    public Member(int id, @NotNull String host, long heartbeat, @NotNull NodeState state) {
+        this.id = id;
+        this.host = host;
+        this.heartbeat = heartbeat;
+        this.state = state;
+    }
+
+    /**
+     * Returns new entry of the same node with heartbeat increased by 1
+     *
+     * @param state of the node
+     * @return next entry of the node
+     */
+    @NotNull
+    public Member next(@NotNull NodeState state) {
+        return new Member(id, host, heartbeat + 1, state);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @NotNull
+    public String getHost() {
+        return host;
+    }
+
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    @NotNull
+    public NodeState getState() {
+        return state;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof Member) {
+            Member object = (Member) o;
+
+            return Objects.equals(id, object.id) &&
+                    Objects.equals(heartbeat, object.heartbeat);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, heartbeat);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("host", host)
+                .add("heartbeat", heartbeat)
+                .add("state", state)
+                .toString();
+    }
+}
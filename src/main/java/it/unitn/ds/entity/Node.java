@@ -1,16 +1,22 @@
 package it.unitn.ds.entity;
 
 import com.google.common.base.MoreObjects;
+import it.unitn.ds.util.VersionUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Nodes are put in the ring in acceding order (with the most greatest id followed by the most lowest id, forming a ring)
  * Nodes store items, such that (NodeId >= itemKey) and replicas of N predecessor's node items
+ * <p>
+ * Items and replicas are sorted by item key, so the token range of any node is a contiguous view of the storage
+ * and can be read or dropped as a whole without scanning the rest of the items
  *
  * @see it.unitn.ds.entity.Item
+ * @see it.unitn.ds.entity.TokenRange
  * @see it.unitn.ds.Replication
  */
 public final class Node implements Serializable {
@@ -32,7 +38,7 @@ public final class Node implements Serializable {
      * Map<ItemKey, Item>
      */
     @NotNull
-    private final Map<Integer, Item> items = new TreeMap<>();
+    private final NavigableMap<Integer, Item> items = new TreeMap<>();
 
     /**
      * Replicated items from predecessor nodes
@@ -40,16 +46,17 @@ public final class Node implements Serializable {
      * Map<ItemKey, Item>
      */
     @NotNull
-    private final Map<Integer, Item> replicas = new TreeMap<>();
+    private final NavigableMap<Integer, Item> replicas = new TreeMap<>();
 
     /**
-     * All known nodes in the ring, including itself
+     * All known nodes in the ring, including itself, updated concurrently by gossip
      * <p>
      * Map<NodeId, Host>
+     *
+     * @see it.unitn.ds.util.GossipUtil
      */
-    // TODO should this be a double linked list instead ?
     @NotNull
-    private final Map<Integer, String> nodes = new TreeMap<>();
+    private final Map<Integer, String> nodes = new ConcurrentSkipListMap<>();
 
     public Node(int id, @NotNull String host) {
         this.id = id;
@@ -77,10 +84,16 @@ public final class Node implements Serializable {
         nodes.remove(id);
     }
 
+    /**
+     * Puts items, keeping the latest version if the item already exists
+     *
+     * @param items to put
+     * @see it.unitn.ds.util.VersionUtil
+     */
     public void putItems(@NotNull Collection<Item> items) {
         for (Item item : items) {
             if (!replicas.containsKey(item.getKey())) {
-                this.items.put(item.getKey(), item);
+                this.items.put(item.getKey(), VersionUtil.resolve(this.items.get(item.getKey()), item));
             }
         }
     }
@@ -91,10 +104,48 @@ public final class Node implements Serializable {
         }
     }
 
+    /**
+     * Returns a copy of own items in the token range
+     *
+     * @param range of item keys
+     * @return items in the order of the ring
+     */
+    @NotNull
+    public List<Item> getItems(@NotNull TokenRange range) {
+        return copy(range.subMaps(items), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a copy of first own items in the token range
+     *
+     * @param range of item keys
+     * @param limit maximum count of items
+     * @return up to limit items in the order of the ring
+     */
+    @NotNull
+    public List<Item> getItems(@NotNull TokenRange range, int limit) {
+        return copy(range.subMaps(items), limit);
+    }
+
+    /**
+     * Removes all own items in the token range
+     *
+     * @param range of item keys
+     */
+    public void removeItems(@NotNull TokenRange range) {
+        clear(range.subMaps(items));
+    }
+
+    /**
+     * Puts replicas, keeping the latest version if the replica already exists
+     *
+     * @param replicas to put
+     * @see it.unitn.ds.util.VersionUtil
+     */
     public void putReplicas(@NotNull Collection<Item> replicas) {
         for (Item replica : replicas) {
             if (!items.containsKey(replica.getKey())) {
-                this.replicas.put(replica.getKey(), replica);
+                this.replicas.put(replica.getKey(), VersionUtil.resolve(this.replicas.get(replica.getKey()), replica));
             }
         }
     }
@@ -105,6 +156,38 @@ public final class Node implements Serializable {
         }
     }
 
+    /**
+     * Returns a copy of replicas in the token range
+     *
+     * @param range of item keys
+     * @return replicas in the order of the ring
+     */
+    @NotNull
+    public List<Item> getReplicas(@NotNull TokenRange range) {
+        return copy(range.subMaps(replicas), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a copy of first replicas in the token range
+     *
+     * @param range of item keys
+     * @param limit maximum count of replicas
+     * @return up to limit replicas in the order of the ring
+     */
+    @NotNull
+    public List<Item> getReplicas(@NotNull TokenRange range, int limit) {
+        return copy(range.subMaps(replicas), limit);
+    }
+
+    /**
+     * Removes all replicas in the token range
+     *
+     * @param range of item keys
+     */
+    public void removeReplicas(@NotNull TokenRange range) {
+        clear(range.subMaps(replicas));
+    }
+
     public int getId() {
         return id;
     }
@@ -126,6 +209,26 @@ public final class Node implements Serializable {
         return Collections.unmodifiableMap(nodes);
     }
 
+    @NotNull
+    private static List<Item> copy(@NotNull List<NavigableMap<Integer, Item>> views, int limit) {
+        List<Item> items = new ArrayList<>();
+        for (Map<Integer, Item> view : views) {
+            for (Item item : view.values()) {
+                if (items.size() == limit) {
+                    return items;
+                }
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static void clear(@NotNull List<NavigableMap<Integer, Item>> views) {
+        for (Map<Integer, Item> view : views) {
+            view.clear();
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -150,8 +253,8 @@ public final class Node implements Serializable {
         return MoreObjects.toStringHelper(this)
                 .add("id", id)
                 .add("host", host)
-                .add("items", Arrays.toString(items.keySet().toArray()))
-                .add("replicas", Arrays.toString(replicas.keySet().toArray()))
+                .add("items", items.size())
+                .add("replicas", replicas.size())
                 .add("nodes", Arrays.toString(nodes.entrySet().toArray()))
                 .toString();
     }
@@ -0,0 +1,201 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import it.unitn.ds.NodeState;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Summary of the node for topology inspection, sent instead of the node itself, so no items are transferred
+ *
+ * @see it.unitn.ds.rmi.NodeServer#getStatus()
+ */
+public final class NodeStatus implements Serializable {
+
+    private final int id;
+
+    @NotNull
+    private final String host;
+
+    @NotNull
+    private final NodeState state;
+
+    /**
+     * Count of own items of the node, including tombstones
+     */
+    private final int itemCount;
+
+    /**
+     * Count of replicas of the node, including tombstones
+     */
+    private final int replicaCount;
+
+    /**
+     * Approximate memory used by items and replicas, as of the latest write of the storage
+     */
+    private final long bytes;
+
+    /**
+     * Token range of own items of the node
+     */
+    @NotNull
+    private final TokenRange tokenRange;
+
+    /**
+     * Token ranges of predecessors, which the node holds replicas of
+     */
+    @NotNull
+    private final List<TokenRange> replicaRanges;
+
+    /**
+     * Count of client requests admitted by the node as coordinator since start
+     */
+    private final long requests;
+
+    /**
+     * Count of client requests coordinated by the node at the moment
+     */
+    private final int inFlight;
+
+    /**
+     * Count of other nodes suspected to be crashed by the node
+     */
+    private final int suspectedCount;
+
+    /**
+     * Count of other nodes, which the node does not send requests to due to open circuit breakers
+     */
+    private final int openCircuitCount;
+
+    public NodeStatus(int id, @NotNull String host, @NotNull NodeState state, int itemCount, int replicaCount, long bytes,
+                      @NotNull TokenRange tokenRange, @NotNull List<TokenRange> replicaRanges,
+                      long requests, int inFlight, int suspectedCount, int openCircuitCount) {
+        this.id = id;
+        this.host = host;
+        this.state = state;
+        this.itemCount = itemCount;
+        this.replicaCount = replicaCount;
+        this.bytes = bytes;
+        this.tokenRange = tokenRange;
+        this.replicaRanges = Collections.unmodifiableList(replicaRanges);
+        this.requests = requests;
+        this.inFlight = inFlight;
+        this.suspectedCount = suspectedCount;
+        this.openCircuitCount = openCircuitCount;
+    }
+
+    /**
+     * Tells if the node sees the rest of the ring as healthy
+     *
+     * @return true if the node is connected and neither suspects nor avoids other nodes, false otherwise
+     */
+    public boolean isHealthy() {
+        return state == NodeState.CONNECTED && suspectedCount == 0 && openCircuitCount == 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @NotNull
+    public String getHost() {
+        return host;
+    }
+
+    @NotNull
+    public NodeState getState() {
+        return state;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getReplicaCount() {
+        return replicaCount;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @NotNull
+    public TokenRange getTokenRange() {
+        return tokenRange;
+    }
+
+    @NotNull
+    public List<TokenRange> getReplicaRanges() {
+        return replicaRanges;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getSuspectedCount() {
+        return suspectedCount;
+    }
+
+    public int getOpenCircuitCount() {
+        return openCircuitCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof NodeStatus) {
+            NodeStatus object = (NodeStatus) o;
+
+            return Objects.equals(id, object.id) &&
+                    Objects.equals(host, object.host) &&
+                    Objects.equals(state, object.state) &&
+                    Objects.equals(itemCount, object.itemCount) &&
+                    Objects.equals(replicaCount, object.replicaCount) &&
+                    Objects.equals(bytes, object.bytes) &&
+                    Objects.equals(tokenRange, object.tokenRange) &&
+                    Objects.equals(replicaRanges, object.replicaRanges) &&
+                    Objects.equals(requests, object.requests) &&
+                    Objects.equals(inFlight, object.inFlight) &&
+                    Objects.equals(suspectedCount, object.suspectedCount) &&
+                    Objects.equals(openCircuitCount, object.openCircuitCount);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, host, state, itemCount, replicaCount, bytes, tokenRange, replicaRanges, requests, inFlight, suspectedCount, openCircuitCount);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("host", host)
+                .add("state", state)
+                .add("healthy", isHealthy())
+                .add("items", itemCount)
+                .add("replicas", replicaCount)
+                .add("bytes", bytes)
+                .add("tokenRange", tokenRange)
+                .add("replicaRanges", Arrays.toString(replicaRanges.toArray()))
+                .add("requests", requests)
+                .add("inFlight", inFlight)
+                .add("suspected", suspectedCount)
+                .add("openCircuits", openCircuitCount)
+                .toString();
+    }
+}
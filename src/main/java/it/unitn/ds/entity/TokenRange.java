@@ -0,0 +1,104 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+
+/**
+ * Range of item keys in the ring (start exclusively, end inclusively) owned by the node with id equal to the end
+ * <p>
+ * Range with start greater or equal to the end crosses zero (e.g. range (30, 10] holds items 8 and 36),
+ * range with start equal to the end covers the whole ring
+ *
+ * @see it.unitn.ds.entity.Node
+ * @see it.unitn.ds.util.RemoteUtil
+ */
+public final class TokenRange implements Serializable {
+
+    /**
+     * Predecessor node id, exclusively
+     */
+    private final int start;
+
+    /**
+     * Owner node id, inclusively
+     */
+    private final int end;
+
+    public TokenRange(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Tells if the item key falls into the range
+     *
+     * @param key of the item
+     * @return true if key is in the range, false otherwise
+     */
+    public boolean contains(int key) {
+        if (start < end) {
+            // zero NOT crossed (e.g. node 10 has successor 15, holds items 12 and 13)
+            return key > start && key <= end;
+        } else {
+            // zero crossed (e.g. node 30 has successor 10, holds items 8 and 36)
+            return key > start || key <= end;
+        }
+    }
+
+    /**
+     * Returns views of the sorted map limited to the range, changes of the views are reflected in the map
+     *
+     * @param map sorted by item key
+     * @return one view if zero is not crossed, two views otherwise
+     */
+    @NotNull
+    public <V> List<NavigableMap<Integer, V>> subMaps(@NotNull NavigableMap<Integer, V> map) {
+        if (start < end) {
+            return Arrays.asList(map.subMap(start, false, end, true));
+        } else {
+            return Arrays.asList(map.tailMap(start, false), map.headMap(end, true));
+        }
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof TokenRange) {
+            TokenRange object = (TokenRange) o;
+
+            return Objects.equals(start, object.start) &&
+                    Objects.equals(end, object.end);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("start", start)
+                .add("end", end)
+                .toString();
+    }
+}
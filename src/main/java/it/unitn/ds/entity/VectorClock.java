@@ -0,0 +1,165 @@
+package it.unitn.ds.entity;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Immutable vector clock of the item, counts updates coordinated by every node
+ * <p>
+ * Used in replication to tell if one version of the item happened before another or they were written concurrently
+ *
+ * @see it.unitn.ds.entity.Item
+ * @see it.unitn.ds.util.VersionUtil
+ */
+public final class VectorClock implements Serializable {
+
+    /**
+     * Result of comparing two vector clocks
+     */
+    public enum Order {
+
+        /**
+         * This clock happened before the other one
+         */
+        BEFORE,
+
+        /**
+         * This clock happened after the other one
+         */
+        AFTER,
+
+        /**
+         * Both clocks are the same
+         */
+        EQUAL,
+
+        /**
+         * Clocks were incremented independently of each other
+         */
+        CONCURRENT
+    }
+
+    /**
+     * Map<NodeId, Counter>
+     */
+    @NotNull
+    private final Map<Integer, Integer> counters;
+
+    public VectorClock() {
+        this(new TreeMap<Integer, Integer>());
+    }
+
+    public VectorClock(@NotNull Map<Integer, Integer> counters) {
+        this.counters = Collections.unmodifiableMap(new TreeMap<>(counters));
+    }
+
+    /**
+     * Returns new clock with counter of the node increased by 1
+     *
+     * @param nodeId of the coordinator node
+     * @return incremented clock
+     */
+    @NotNull
+    public VectorClock increment(int nodeId) {
+        Map<Integer, Integer> incremented = new TreeMap<>(counters);
+        incremented.put(nodeId, getCounter(nodeId) + 1);
+        return new VectorClock(incremented);
+    }
+
+    /**
+     * Returns new clock with the highest counter of every node from both clocks
+     *
+     * @param clock to merge with
+     * @return merged clock, which happened after (or equal to) both of the clocks
+     */
+    @NotNull
+    public VectorClock merge(@NotNull VectorClock clock) {
+        Map<Integer, Integer> merged = new TreeMap<>(counters);
+        for (Map.Entry<Integer, Integer> entry : clock.counters.entrySet()) {
+            merged.put(entry.getKey(), Math.max(entry.getValue(), getCounter(entry.getKey())));
+        }
+        return new VectorClock(merged);
+    }
+
+    /**
+     * Compares this clock to the other one
+     *
+     * @param clock to compare with
+     * @return order of this clock relative to the other one
+     */
+    @NotNull
+    public Order compare(@NotNull VectorClock clock) {
+        boolean isBefore = false;
+        boolean isAfter = false;
+        Set<Integer> nodeIds = new TreeSet<>(counters.keySet());
+        nodeIds.addAll(clock.counters.keySet());
+        for (int nodeId : nodeIds) {
+            int difference = getCounter(nodeId) - clock.getCounter(nodeId);
+            if (difference < 0) {
+                isBefore = true;
+            } else if (difference > 0) {
+                isAfter = true;
+            }
+        }
+        if (isBefore && isAfter) {
+            return Order.CONCURRENT;
+        } else if (isBefore) {
+            return Order.BEFORE;
+        } else if (isAfter) {
+            return Order.AFTER;
+        }
+        return Order.EQUAL;
+    }
+
+    public int getCounter(int nodeId) {
+        Integer counter = counters.get(nodeId);
+        return counter == null ? 0 : counter;
+    }
+
+    /**
+     * Total amount of updates, grows with every causally subsequent update of the item
+     *
+     * @return sum of all counters
+     */
+    public int getSum() {
+        int sum = 0;
+        for (int counter : counters.values()) {
+            sum += counter;
+        }
+        return sum;
+    }
+
+    @NotNull
+    public Map<Integer, Integer> getCounters() {
+        return counters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        if (o instanceof VectorClock) {
+            VectorClock object = (VectorClock) o;
+
+            return Objects.equals(counters, object.counters);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(counters);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("counters", Arrays.toString(counters.entrySet().toArray()))
+                .toString();
+    }
+}
@@ -0,0 +1,22 @@
+package it.unitn.ds.rmi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.rmi.RemoteException;
+
+/**
+ * Thrown by the coordinator, which rejected the update of the item, since the live item has another raw key
+ * hashed to the same item key, or the integer key addresses the live item of a string or binary key
+ * <p>
+ * The update has no effect, retrying it fails the same way until the other key is deleted
+ * <p>
+ * RMI delivers the exception to the client wrapped in ServerException
+ *
+ * @see it.unitn.ds.util.KeyUtil
+ */
+public final class KeyCollisionException extends RemoteException {
+
+    public KeyCollisionException(@NotNull String key, int itemKey) {
+        super("Key=" + key + " collides with another key of the item with key=" + itemKey);
+    }
+}
@@ -1,14 +1,22 @@
 package it.unitn.ds.rmi;
 
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.ItemPage;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Map;
 
 /**
  * Interface to be used by CLIENT for accessing the remote node via RMI
+ * <p>
+ * Get, update, delete and scan requests are admitted under concurrency limits of the coordinator
+ * and rejected with OverloadedException above them, get, update and delete requests also under quotas
+ * of the keyspace of the item
+ *
+ * @see it.unitn.ds.rmi.OverloadedException
  */
 public interface NodeClient extends Remote {
 
@@ -17,4 +25,128 @@ public interface NodeClient extends Remote {
 
     @Nullable
     Item updateItem(int key, @NotNull String value) throws RemoteException;
+
+    /**
+     * Creates or updates the item, which expires after time to live
+     * <p>
+     * Expired item is not returned to the client and is replaced with tombstone by the expiry sweeper of every replica
+     *
+     * @param key   of the item
+     * @param value new value of the item
+     * @param ttl   milliseconds for the item to live since the update, 0 if the item never expires
+     * @return created or updated item, or null if not agreed on WRITE quorum
+     * @see it.unitn.ds.util.ExpiryUtil
+     */
+    @Nullable
+    Item updateItem(int key, @NotNull String value, int ttl) throws RemoteException;
+
+    /**
+     * Deletes the item, replacing it with versioned tombstone on WRITE quorum of replicas
+     * <p>
+     * Tombstone is kept for the configured grace period, so older versions of the item are not resurrected
+     * by replication or recovery, and then it is removed by the expiry sweeper of every replica
+     *
+     * @param key of the item
+     * @return tombstone of the item, or null if the item does not exist or not agreed on WRITE quorum
+     * @see it.unitn.ds.util.ExpiryUtil
+     */
+    @Nullable
+    Item deleteItem(int key) throws RemoteException;
+
+    /**
+     * Returns the item of the keyspace
+     *
+     * @param keyspace name of the keyspace
+     * @param key      of the item in the keyspace, between 0 and size of the keyspace - 1
+     * @return item under it's key in the ring, or null if the item does not exist or not agreed on READ quorum
+     * @throws RemoteException if there is no such keyspace or the key is outside of it
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    @Nullable
+    Item getItem(@NotNull String keyspace, int key) throws RemoteException;
+
+    /**
+     * Creates or updates the item of the keyspace, which expires after time to live
+     *
+     * @param keyspace name of the keyspace
+     * @param key      of the item in the keyspace, between 0 and size of the keyspace - 1
+     * @param value    new value of the item
+     * @param ttl      milliseconds for the item to live since the update, 0 if the item never expires
+     * @return created or updated item under it's key in the ring, or null if not agreed on WRITE quorum
+     * @throws RemoteException if there is no such keyspace, the key is outside of it or the value exceeds it's quota
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    @Nullable
+    Item updateItem(@NotNull String keyspace, int key, @NotNull String value, int ttl) throws RemoteException;
+
+    /**
+     * Deletes the item of the keyspace
+     *
+     * @param keyspace name of the keyspace
+     * @param key      of the item in the keyspace, between 0 and size of the keyspace - 1
+     * @return tombstone of the item under it's key in the ring, or null if the item does not exist or not agreed on WRITE quorum
+     * @throws RemoteException if there is no such keyspace or the key is outside of it
+     * @see it.unitn.ds.entity.Keyspace
+     */
+    @Nullable
+    Item deleteItem(@NotNull String keyspace, int key) throws RemoteException;
+
+    /**
+     * Returns the item of the string or binary key
+     *
+     * @param key raw key of the item, hashed to item key
+     * @return item with the raw key, or null if the item does not exist, not agreed on READ quorum
+     * or the item key is taken by another key
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    @Nullable
+    Item getItem(@NotNull byte[] key) throws RemoteException;
+
+    /**
+     * Creates or updates the item of the string or binary key, which expires after time to live
+     *
+     * @param key   raw key of the item, hashed to item key
+     * @param value new value of the item
+     * @param ttl   milliseconds for the item to live since the update, 0 if the item never expires
+     * @return created or updated item, or null if not agreed on WRITE quorum
+     * @throws RemoteException if the item key is taken by the live item of another key
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    @Nullable
+    Item updateItem(@NotNull byte[] key, @NotNull String value, int ttl) throws RemoteException;
+
+    /**
+     * Deletes the item of the string or binary key
+     *
+     * @param key raw key of the item, hashed to item key
+     * @return tombstone of the item, or null if the item does not exist, not agreed on WRITE quorum
+     * or the item key is taken by another key
+     * @see it.unitn.ds.util.KeyUtil
+     */
+    @Nullable
+    Item deleteItem(@NotNull byte[] key) throws RemoteException;
+
+    /**
+     * Returns one page of items with keys in [ fromKey, toKey ] sorted by item key
+     * <p>
+     * Every node segment of the range is read from quorum nodes out of the owner and it's replicas
+     *
+     * @param fromKey first item key, inclusively
+     * @param toKey   last item key, inclusively
+     * @param limit   maximum count of items in the page, bounded by ServiceConfiguration scan page size
+     * @param quorum  count of nodes to read every segment from, between 1 and the smallest N of the keyspaces within the range
+     * @return page of items with continuation key, or null if not agreed on quorum or arguments are invalid
+     * @see it.unitn.ds.Replication
+     */
+    @Nullable
+    ItemPage getItems(int fromKey, int toKey, int limit, int quorum) throws RemoteException;
+
+    /**
+     * Returns current metrics of the node
+     *
+     * @return Map<MetricName, Value> sorted by name
+     * @see it.unitn.ds.util.MetricsUtil
+     */
+    @NotNull
+    Map<String, Number> getMetrics() throws RemoteException;
 }
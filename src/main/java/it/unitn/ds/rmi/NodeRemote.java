@@ -1,11 +1,36 @@
 package it.unitn.ds.rmi;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.BloomFilter;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Striped;
+import it.unitn.ds.NodeState;
+import it.unitn.ds.Operation;
 import it.unitn.ds.Replication;
+import it.unitn.ds.ServerLauncher;
+import it.unitn.ds.ServiceConfiguration;
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.ItemPage;
+import it.unitn.ds.entity.Member;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.entity.TokenRange;
+import it.unitn.ds.util.AdmissionUtil;
+import it.unitn.ds.util.BloomFilterUtil;
+import it.unitn.ds.util.CircuitBreakerUtil;
+import it.unitn.ds.util.GossipUtil;
+import it.unitn.ds.util.KeyUtil;
+import it.unitn.ds.util.KeyspaceUtil;
+import it.unitn.ds.util.MetricsUtil;
 import it.unitn.ds.util.MultithreadingUtil;
+import it.unitn.ds.util.ReadCacheUtil;
 import it.unitn.ds.util.RemoteUtil;
+import it.unitn.ds.util.ReplicationQueueUtil;
 import it.unitn.ds.util.StorageUtil;
+import it.unitn.ds.util.VersionUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -13,10 +38,14 @@ import org.jetbrains.annotations.Nullable;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -27,9 +56,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * <p>
  * Read Lock: multiple readers can enter, if not locked for writing
  * Write Lock: only one writer can enter, if not locked for reading
+ * <p>
+ * Client operations are locked per item key only, concurrent updates of other coordinators are detected by vector clocks
+ * <p>
+ * Items read or updated by the coordinator are cached for a short time to serve hot items without quorum requests
+ * <p>
+ * Client requests follow replication, quorums and quotas of the keyspace of the item,
+ * requests by string and binary keys are served under item keys hashed from them
  *
  * @see it.unitn.ds.entity.Item
  * @see it.unitn.ds.entity.Node
+ * @see it.unitn.ds.entity.VectorClock
+ * @see it.unitn.ds.util.KeyUtil
+ * @see it.unitn.ds.util.KeyspaceUtil
+ * @see it.unitn.ds.util.ReadCacheUtil
  * @see java.util.concurrent.locks.ReadWriteLock
  * @see java.util.concurrent.locks.ReentrantReadWriteLock
  */
@@ -37,6 +77,22 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
 
     private static final Logger logger = LogManager.getLogger();
 
+    private static final int CLIENT_LOCK_STRIPES = 64;
+
+    private static final int SCAN_PAGE_SIZE = ServiceConfiguration.getScanPageSize();
+
+    private static final long TOMBSTONE_GRACE = ServiceConfiguration.getTombstoneGrace();
+
+    /**
+     * Resolves latest version among the versions of the item read from replicas
+     */
+    private static final Function<List<Item>, Item> LATEST = new Function<List<Item>, Item>() {
+        @Override
+        public Item apply(@NotNull List<Item> replicas) {
+            return VersionUtil.getLatest(replicas);
+        }
+    };
+
     /**
      * Locks nodes TreeMap operations of the node
      */
@@ -53,15 +109,64 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
     private static final ReadWriteLock replicasLock = new ReentrantReadWriteLock();
 
     /**
-     * Locks client operations of the node
+     * Serializes writes of the node storage, so the latest state of items and replicas is written last
+     */
+    private static final Object storageLock = new Object();
+
+    /**
+     * Locks client operations of the node on the same item key
      */
-    private static final ReadWriteLock clientLock = new ReentrantReadWriteLock();
+    private static final Striped<ReadWriteLock> clientLocks = Striped.readWriteLock(CLIENT_LOCK_STRIPES);
 
     @NotNull
     private final Node node;
 
+    /**
+     * Filter of keys of items and replicas, replaced with every write of the storage
+     */
+    @NotNull
+    private volatile BloomFilter<Integer> bloomFilter;
+
+    /**
+     * Count of tombstones among items and replicas, updated with every write of the storage
+     */
+    private volatile int tombstoneCount;
+
+    /**
+     * Approximate memory used by tombstones among items and replicas, updated with every write of the storage
+     */
+    private volatile long tombstoneBytes;
+
+    /**
+     * Approximate memory used by items and replicas, updated with every write of the storage
+     */
+    private volatile long storageBytes;
+
     public NodeRemote(@NotNull Node node) throws RemoteException {
         this.node = node;
+        this.bloomFilter = BloomFilterUtil.create(node.getItems().values(), node.getReplicas().values());
+        countStorage(node.getItems().values(), node.getReplicas().values());
+        MetricsUtil.register("tombstones.count", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return tombstoneCount;
+            }
+        });
+        MetricsUtil.register("tombstones.bytes", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return tombstoneBytes;
+            }
+        });
+        MetricsUtil.register("config.version", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return ServiceConfiguration.getVersion();
+            }
+        });
     }
 
     @NotNull
@@ -83,6 +188,42 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
         }
     }
 
+    @NotNull
+    @Override
+    public NodeStatus getStatus() throws RemoteException {
+        int itemCount;
+        int replicaCount;
+        itemsLock.readLock().lock();
+        try {
+            itemCount = node.getItems().size();
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+        replicasLock.readLock().lock();
+        try {
+            replicaCount = node.getReplicas().size();
+        } finally {
+            replicasLock.readLock().unlock();
+        }
+        Map<Integer, String> nodes = node.getNodes();
+        int suspectedCount = 0;
+        for (int nodeId : nodes.keySet()) {
+            if (nodeId != node.getId() && GossipUtil.isSuspected(nodeId)) {
+                suspectedCount++;
+            }
+        }
+        NodeStatus status = new NodeStatus(node.getId(), node.getHost(), NodeState.CONNECTED, itemCount, replicaCount, storageBytes,
+                RemoteUtil.getTokenRange(node.getId(), nodes), RemoteUtil.getReplicaRanges(node.getId(), nodes, Replication.getN() - 1),
+                AdmissionUtil.getAdmitted(), AdmissionUtil.getInFlight(), suspectedCount, CircuitBreakerUtil.getOpenCount());
+        logger.debug("Get status=" + status);
+        return status;
+    }
+
+    @Override
+    public int getTopologyVersion() throws RemoteException {
+        return RemoteUtil.getTopologyVersion(node.getNodes());
+    }
+
     @Override
     public void addNode(int id, @NotNull String host) throws RemoteException {
         nodesLock.writeLock().lock();
@@ -107,17 +248,188 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
         }
     }
 
+    @Nullable
+    @Override
+    public Item readItem(int key) throws RemoteException {
+        MetricsUtil.increment("items.requests");
+        itemsLock.readLock().lock();
+        try {
+            Item item = node.getItems().get(key);
+            logger.debug("Read item=" + item);
+            return item;
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Item readReplica(int key) throws RemoteException {
+        replicasLock.readLock().lock();
+        try {
+            Item replica = node.getReplicas().get(key);
+            logger.debug("Read replica=" + replica);
+            return replica;
+        } finally {
+            replicasLock.readLock().unlock();
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Integer> sampleItemKeys(int count) throws RemoteException {
+        List<Integer> keys = new ArrayList<>();
+        itemsLock.readLock().lock();
+        try {
+            int size = node.getItems().size();
+            int step = Math.max(1, size / Math.max(1, count));
+            int index = 0;
+            for (int key : node.getItems().keySet()) {
+                if (index++ % step == 0 && keys.size() < count) {
+                    keys.add(key);
+                }
+            }
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+        logger.debug("Sampled " + keys.size() + " item keys");
+        return keys;
+    }
+
+    @Override
+    public void move(int nodeId) throws RemoteException {
+        logger.info("Requested move of nodeId=" + node.getId() + " to nodeId=" + nodeId);
+        boolean moved;
+        try {
+            moved = ServerLauncher.move(nodeId);
+        } catch (Exception e) {
+            throw new RemoteException("Failed to move nodeId=" + node.getId() + " to nodeId=" + nodeId, e);
+        }
+        if (!moved) {
+            throw new RemoteException("Cannot move nodeId=" + node.getId() + " to nodeId=" + nodeId);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Item> readItems(@NotNull List<Integer> keys) throws RemoteException {
+        List<Item> items = new ArrayList<>();
+        itemsLock.readLock().lock();
+        try {
+            for (int key : keys) {
+                Item item = node.getItems().get(key);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+        logger.debug("Read " + items.size() + " of " + keys.size() + " items");
+        return items;
+    }
+
+    @NotNull
+    @Override
+    public List<Item> readReplicas(@NotNull List<Integer> keys) throws RemoteException {
+        List<Item> replicas = new ArrayList<>();
+        replicasLock.readLock().lock();
+        try {
+            for (int key : keys) {
+                Item replica = node.getReplicas().get(key);
+                if (replica != null) {
+                    replicas.add(replica);
+                }
+            }
+        } finally {
+            replicasLock.readLock().unlock();
+        }
+        logger.debug("Read " + replicas.size() + " of " + keys.size() + " replicas");
+        return replicas;
+    }
+
+    @NotNull
+    @Override
+    public BloomFilter<Integer> getBloomFilter() throws RemoteException {
+        return bloomFilter;
+    }
+
+    @Override
+    public int expireItems(int fromKey, int limit) throws RemoteException {
+        List<Item> tombstones = new ArrayList<>();
+        List<Item> compacted = new ArrayList<>();
+        int nextKey;
+        itemsLock.writeLock().lock();
+        try {
+            nextKey = sweep(node.getItems(getKeyRange(fromKey), limit), limit, tombstones, compacted);
+            node.putItems(tombstones);
+            node.removeItems(compacted);
+        } finally {
+            itemsLock.writeLock().unlock();
+        }
+        if (!tombstones.isEmpty() || !compacted.isEmpty()) {
+            logger.debug("Expired items=" + Arrays.toString(tombstones.toArray()) + ", compacted tombstones=" + Arrays.toString(compacted.toArray()));
+            persist();
+        }
+        return nextKey;
+    }
+
+    @Override
+    public int expireReplicas(int fromKey, int limit) throws RemoteException {
+        List<Item> tombstones = new ArrayList<>();
+        List<Item> compacted = new ArrayList<>();
+        int nextKey;
+        replicasLock.writeLock().lock();
+        try {
+            nextKey = sweep(node.getReplicas(getKeyRange(fromKey), limit), limit, tombstones, compacted);
+            node.putReplicas(tombstones);
+            node.removeReplicas(compacted);
+        } finally {
+            replicasLock.writeLock().unlock();
+        }
+        if (!tombstones.isEmpty() || !compacted.isEmpty()) {
+            logger.debug("Expired replicas=" + Arrays.toString(tombstones.toArray()) + ", compacted tombstones=" + Arrays.toString(compacted.toArray()));
+            persist();
+        }
+        return nextKey;
+    }
+
     @Override
     public void updateItems(@NotNull List<Item> items) throws RemoteException {
+        MetricsUtil.add("items.requests", items.size());
         itemsLock.writeLock().lock();
         try {
             logger.debug("Update items=" + Arrays.toString(items.toArray()));
             node.putItems(items);
-            StorageUtil.write(node);
             logger.debug("Current items=" + Arrays.toString(node.getItems().keySet().toArray()));
         } finally {
             itemsLock.writeLock().unlock();
         }
+        persist();
+    }
+
+    @Override
+    public void loadItems(@NotNull List<Item> items, @NotNull List<Item> replicas, boolean flush) throws RemoteException {
+        itemsLock.writeLock().lock();
+        try {
+            node.putItems(items);
+        } finally {
+            itemsLock.writeLock().unlock();
+        }
+        replicasLock.writeLock().lock();
+        try {
+            node.putReplicas(replicas);
+        } finally {
+            replicasLock.writeLock().unlock();
+        }
+        MetricsUtil.add("load.items", items.size());
+        MetricsUtil.add("load.replicas", replicas.size());
+        logger.debug("Loaded " + items.size() + " items and " + replicas.size() + " replicas, flush=" + flush);
+        if (flush) {
+            ReadCacheUtil.invalidateAll();
+            persist();
+            logger.info("Flushed bulk load, current items=" + node.getItems().size() + ", replicas=" + node.getReplicas().size());
+        }
     }
 
     @Override
@@ -126,11 +438,11 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
         try {
             logger.debug("Remove items=" + Arrays.toString(items.toArray()));
             node.removeItems(items);
-            StorageUtil.write(node);
             logger.debug("Current items=" + Arrays.toString(node.getItems().keySet().toArray()));
         } finally {
             itemsLock.writeLock().unlock();
         }
+        persist();
     }
 
     @Override
@@ -139,11 +451,11 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
         try {
             logger.debug("Update replicas=" + Arrays.toString(replicas.toArray()));
             node.putReplicas(replicas);
-            StorageUtil.write(node);
             logger.debug("Current replicas=" + Arrays.toString(node.getReplicas().keySet().toArray()));
         } finally {
             replicasLock.writeLock().unlock();
         }
+        persist();
     }
 
     @Override
@@ -152,131 +464,727 @@ public final class NodeRemote extends UnicastRemoteObject implements NodeServer,
         try {
             logger.debug("Remove replicas=" + Arrays.toString(replicas.toArray()));
             node.removeReplicas(replicas);
-            StorageUtil.write(node);
             logger.debug("Current replicas=" + Arrays.toString(node.getReplicas().keySet().toArray()));
         } finally {
             replicasLock.writeLock().unlock();
         }
+        persist();
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getItemRange(@NotNull TokenRange range) throws RemoteException {
+        itemsLock.readLock().lock();
+        try {
+            List<Item> items = node.getItems(range);
+            logger.debug("Get items=" + Arrays.toString(items.toArray()) + " in range=" + range);
+            return items;
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getItemRange(@NotNull TokenRange range, int limit) throws RemoteException {
+        itemsLock.readLock().lock();
+        try {
+            List<Item> items = node.getItems(range, limit);
+            logger.debug("Get items=" + Arrays.toString(items.toArray()) + " in range=" + range + ", limit=" + limit);
+            return items;
+        } finally {
+            itemsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeItemRange(@NotNull TokenRange range) throws RemoteException {
+        itemsLock.writeLock().lock();
+        try {
+            logger.debug("Remove items in range=" + range);
+            node.removeItems(range);
+            logger.debug("Current items=" + Arrays.toString(node.getItems().keySet().toArray()));
+        } finally {
+            itemsLock.writeLock().unlock();
+        }
+        persist();
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getReplicaRange(@NotNull TokenRange range) throws RemoteException {
+        replicasLock.readLock().lock();
+        try {
+            List<Item> replicas = node.getReplicas(range);
+            logger.debug("Get replicas=" + Arrays.toString(replicas.toArray()) + " in range=" + range);
+            return replicas;
+        } finally {
+            replicasLock.readLock().unlock();
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getReplicaRange(@NotNull TokenRange range, int limit) throws RemoteException {
+        replicasLock.readLock().lock();
+        try {
+            List<Item> replicas = node.getReplicas(range, limit);
+            logger.debug("Get replicas=" + Arrays.toString(replicas.toArray()) + " in range=" + range + ", limit=" + limit);
+            return replicas;
+        } finally {
+            replicasLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeReplicaRange(@NotNull TokenRange range) throws RemoteException {
+        replicasLock.writeLock().lock();
+        try {
+            logger.debug("Remove replicas in range=" + range);
+            node.removeReplicas(range);
+            logger.debug("Current replicas=" + Arrays.toString(node.getReplicas().keySet().toArray()));
+        } finally {
+            replicasLock.writeLock().unlock();
+        }
+        persist();
+    }
+
+    @NotNull
+    @Override
+    public Map<Integer, Member> gossip(@NotNull Map<Integer, Member> members) throws RemoteException {
+        logger.trace("Gossip members=" + Arrays.toString(members.values().toArray()));
+        return GossipUtil.merge(members);
+    }
+
+    @Override
+    public int configure(@NotNull Map<String, String> properties) throws RemoteException {
+        int previousN = Replication.getN();
+        Map<String, String> changes;
+        try {
+            changes = ServiceConfiguration.apply(properties);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected configuration changes=" + properties, e);
+            throw new RemoteException(e.getMessage());
+        }
+        if (!changes.isEmpty()) {
+            MultithreadingUtil.reconfigure();
+            ReplicationQueueUtil.reconfigure();
+            ReadCacheUtil.reconfigure();
+            AdmissionUtil.reconfigure();
+            if (Replication.getN() != previousN) {
+                replicate(previousN);
+            }
+        }
+        return ServiceConfiguration.getVersion();
     }
 
     @Nullable
     @Override
     public Item getItem(int key) throws RemoteException {
+        KeyspaceUtil.checkQuota(key, null);
+        long admittedAt = AdmissionUtil.acquire(Operation.READ);
+        ReadWriteLock clientLock = clientLocks.get(key);
         clientLock.readLock().lock();
         try {
+            Item cached = ReadCacheUtil.get(key);
+            if (cached != null) {
+                logger.debug("Got cached item=" + cached);
+                return cached.isLive() ? cached : null;
+            }
             logger.debug("Get replica item with key=" + key);
-            Item item = getLatestVersion(getReplicas(key));
+            Item item = MultithreadingUtil.await(Futures.transform(readReplicas(key, KeyspaceUtil.getR(key), MultithreadingUtil.getDeadline()), LATEST));
             logger.debug("Got replica item=" + item);
-            return item;
+            if (item == null) {
+                return null;
+            }
+            ReadCacheUtil.put(item);
+            return item.isLive() ? item : null;
         } finally {
             clientLock.readLock().unlock();
+            AdmissionUtil.release(Operation.READ, admittedAt);
         }
     }
 
     @Nullable
     @Override
     public Item updateItem(int key, @NotNull String value) throws RemoteException {
+        return updateItem(key, value, 0);
+    }
+
+    @Nullable
+    @Override
+    public Item updateItem(int key, @NotNull String value, int ttl) throws RemoteException {
+        return updateItem(key, null, value, ttl);
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(int key) throws RemoteException {
+        return deleteItem(key, null);
+    }
+
+    @Nullable
+    @Override
+    public Item getItem(@NotNull byte[] key) throws RemoteException {
+        int itemKey = KeyUtil.getItemKey(key);
+        Item item = getItem(itemKey);
+        if (item != null && !item.hasRawKey(key)) {
+            logger.debug("Got item=" + item + " of another key than key=" + KeyUtil.toString(key));
+            return null;
+        }
+        return item;
+    }
+
+    @Nullable
+    @Override
+    public Item updateItem(@NotNull byte[] key, @NotNull String value, int ttl) throws RemoteException {
+        return updateItem(KeyUtil.getItemKey(key), key, value, ttl);
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(@NotNull byte[] key) throws RemoteException {
+        return deleteItem(KeyUtil.getItemKey(key), key);
+    }
+
+    /**
+     * Creates or updates the item on WRITE quorum of replicas
+     *
+     * @param key    of the item
+     * @param rawKey of the item, null if the item is addressed by item key
+     * @param value  new value of the item
+     * @param ttl    milliseconds for the item to live since the update, 0 if the item never expires
+     * @return created or updated item, or null if not agreed on WRITE quorum
+     */
+    @Nullable
+    private Item updateItem(final int key, @Nullable final byte[] rawKey, @NotNull final String value, final int ttl) throws RemoteException {
+        KeyspaceUtil.checkQuota(key, value);
+        long admittedAt = AdmissionUtil.acquire(Operation.WRITE);
+        ReadWriteLock clientLock = clientLocks.get(key);
         clientLock.writeLock().lock();
         try {
-            logger.debug("Update replica item with key=" + key + ", value=" + value);
-            Item item = updateReplicas(key, value);
+            logger.debug("Update replica item with key=" + key + ", value=" + value + ", ttl=" + ttl);
+            Item item = MultithreadingUtil.await(updateReplicas(key, new AsyncFunction<List<Item>, Item>() {
+                @Override
+                public ListenableFuture<Item> apply(@NotNull List<Item> replicas) throws KeyCollisionException {
+                    return Futures.immediateFuture(createOrUpdate(key, rawKey, value, ttl, replicas));
+                }
+            }));
             logger.debug("Updated replica item=" + item);
+            if (item == null) {
+                ReadCacheUtil.invalidate(key);
+            } else {
+                ReadCacheUtil.put(item);
+            }
             return item;
         } finally {
             clientLock.writeLock().unlock();
+            AdmissionUtil.release(Operation.WRITE, admittedAt);
         }
     }
 
     /**
-     * Returns collection of items and replicas
+     * Deletes the item, replacing it with tombstone on WRITE quorum of replicas
+     *
+     * @param key    of the item
+     * @param rawKey of the item, null if the item is addressed by item key
+     * @return tombstone of the item, or null if the item does not exist or not agreed on WRITE quorum
+     */
+    @Nullable
+    private Item deleteItem(int key, @Nullable final byte[] rawKey) throws RemoteException {
+        KeyspaceUtil.checkQuota(key, null);
+        long admittedAt = AdmissionUtil.acquire(Operation.WRITE);
+        ReadWriteLock clientLock = clientLocks.get(key);
+        clientLock.writeLock().lock();
+        try {
+            logger.debug("Delete replica item with key=" + key);
+            Item tombstone = MultithreadingUtil.await(updateReplicas(key, new AsyncFunction<List<Item>, Item>() {
+                @Override
+                public ListenableFuture<Item> apply(@NotNull List<Item> replicas) {
+                    return Futures.immediateFuture(delete(rawKey, replicas));
+                }
+            }));
+            logger.debug("Deleted replica item=" + tombstone);
+            if (tombstone == null) {
+                ReadCacheUtil.invalidate(key);
+            } else {
+                ReadCacheUtil.put(tombstone);
+            }
+            return tombstone;
+        } finally {
+            clientLock.writeLock().unlock();
+            AdmissionUtil.release(Operation.WRITE, admittedAt);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Item getItem(@NotNull String keyspace, int key) throws RemoteException {
+        return getItem(getItemKey(keyspace, key));
+    }
+
+    @Nullable
+    @Override
+    public Item updateItem(@NotNull String keyspace, int key, @NotNull String value, int ttl) throws RemoteException {
+        return updateItem(getItemKey(keyspace, key), value, ttl);
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(@NotNull String keyspace, int key) throws RemoteException {
+        return deleteItem(getItemKey(keyspace, key));
+    }
+
+    @Nullable
+    @Override
+    public ItemPage getItems(int fromKey, int toKey, int limit, int quorum) throws RemoteException {
+        if (fromKey <= 0 || fromKey > toKey || limit <= 0 || quorum <= 0 || quorum > KeyspaceUtil.getN(fromKey, toKey)) {
+            logger.warn("Invalid scan fromKey=" + fromKey + ", toKey=" + toKey + ", limit=" + limit + ", quorum=" + quorum);
+            return null;
+        }
+        long admittedAt = AdmissionUtil.acquire(Operation.SCAN);
+        try {
+            logger.debug("Scan items with fromKey=" + fromKey + ", toKey=" + toKey + ", limit=" + limit + ", quorum=" + quorum);
+            ItemPage page = scanItems(fromKey, toKey, Math.min(limit, SCAN_PAGE_SIZE), quorum);
+            logger.debug("Scanned page=" + page);
+            return page;
+        } finally {
+            AdmissionUtil.release(Operation.SCAN, admittedAt);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Number> getMetrics() throws RemoteException {
+        return MetricsUtil.getMetrics();
+    }
+
+    /**
+     * Returns item key in the ring for the key of the keyspace
+     *
+     * @throws RemoteException if there is no such keyspace or the key is outside of it
+     */
+    private static int getItemKey(@NotNull String keyspace, int key) throws RemoteException {
+        try {
+            return KeyspaceUtil.get(keyspace).getItemKey(key);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    /**
+     * Requests the item from the responsible node and replicas from the rest of it's preference list
+     * of the keyspace N nodes concurrently, preferring the nodes of the same zone
      * <p>
-     * Replicas are requested concurrently and returned as soon as R replicas replied
+     * Bloom filters skip at most N - quorum nodes, so at least quorum nodes are read and overlap the nodes
+     * of the latest write by [ W + R > N ], even if cached filters miss items written through other coordinators
      *
-     * @param itemKey of the item
-     * @return collection of items with the same item key
-     * @see it.unitn.ds.Replication
-     * @see it.unitn.ds.ServiceConfiguration
+     * @param itemKey  of the item
+     * @param quorum   count of versions sufficient for the request
+     * @param deadline of the client operation
+     * @return future of versions of the item, completed as soon as quorum versions have been received
+     * @see it.unitn.ds.util.MultithreadingUtil
      */
     @NotNull
-    private List<Item> getReplicas(int itemKey) throws RemoteException {
-        Node nodeForItem = RemoteUtil.getNodeForItem(itemKey, node.getNodes());
-        Item item = nodeForItem.getItems().get(itemKey);
-        List<Item> replicas = MultithreadingUtil.getReplicas(itemKey, nodeForItem, item != null, node.getNodes());
-        if (item != null) {
-            logger.debug("Got original item=" + item + " from nodeForItem=" + nodeForItem);
-            replicas.add(item);
+    private ListenableFuture<List<Item>> readReplicas(final int itemKey, int quorum, long deadline) {
+        Map<Integer, Callable<Item>> tasks = new LinkedHashMap<>();
+        Map<Integer, String> nodes = node.getNodes();
+        List<Integer> preferenceList = RemoteUtil.getPreferenceList(itemKey, nodes, KeyspaceUtil.getN(itemKey));
+        final AtomicInteger skippable = new AtomicInteger(preferenceList.size() - quorum);
+        for (final int nodeId : preferenceList) {
+            final boolean isOriginal = tasks.isEmpty();
+            tasks.put(nodeId, new Callable<Item>() {
+                @Override
+                public Item call() throws Exception {
+                    NodeServer nodeServer = getNodeServer(nodeId);
+                    if (nodeServer == null) {
+                        return null;
+                    }
+                    boolean mightContain = mightContain(nodeId, nodeServer, itemKey);
+                    if (!mightContain && skippable.getAndDecrement() > 0) {
+                        return null;
+                    }
+                    Item item = isOriginal ? nodeServer.readItem(itemKey) : nodeServer.readReplica(itemKey);
+                    if (item == null && mightContain) {
+                        BloomFilterUtil.recordFalsePositive();
+                    }
+                    logger.debug("Read item=" + item + " from nodeId=" + nodeId);
+                    return item;
+                }
+            });
         }
-        return replicas;
+        return MultithreadingUtil.quorum(tasks, quorum, RemoteUtil.getLocalNodeIds(preferenceList, nodes), deadline);
+    }
+
+    /**
+     * Queues the item to the responsible node and as replica to the rest of it's preference list of the keyspace N nodes,
+     * so it is sent in batches together with other items written to the same nodes
+     * <p>
+     * Nodes with open circuits are skipped the same way as suspected nodes
+     *
+     * @param item     to write
+     * @param quorum   count of acknowledgements sufficient for the request
+     * @param deadline of the client operation
+     * @return future of acknowledgements, completed as soon as quorum nodes have acknowledged the write
+     * @see it.unitn.ds.util.ReplicationQueueUtil
+     */
+    @NotNull
+    private ListenableFuture<List<Boolean>> writeReplicas(@NotNull Item item, int quorum, long deadline) {
+        List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+        for (int nodeId : RemoteUtil.getPreferenceList(item.getKey(), node.getNodes(), KeyspaceUtil.getN(item.getKey()))) {
+            boolean isOriginal = futures.isEmpty();
+            NodeServer nodeServer = getNodeServer(nodeId);
+            if (nodeServer == null || !CircuitBreakerUtil.allowRequest(nodeId)) {
+                futures.add(Futures.<Boolean>immediateFuture(null));
+            } else {
+                BloomFilterUtil.put(nodeId, item.getKey());
+                futures.add(ReplicationQueueUtil.write(nodeServer, nodeId, isOriginal, item));
+            }
+        }
+        return MultithreadingUtil.quorumOf(futures, quorum, deadline);
     }
 
     /**
      * Creates new item if exists or updates existing item with new value and increased version number
      * <p>
-     * Replicas are updated concurrently
+     * Replicas are read and updated concurrently, the update is composed of futures without blocking any thread,
+     * reading and writing share one deadline, so the update never takes longer than Replication timeout
      * <p>
      * Amount of replicas operational must satisfy formula [ Q == max( R , W ) ], where:
      * - Q is the number of replicas and items gotten from operational nodes
-     * - R and W are read and write quorums respectively
+     * - R and W are read and write quorums of the keyspace of the item respectively
      *
-     * @param itemKey   of the item
-     * @param itemValue new value of the item
-     * @return created or updated item or null if not agreed on WRITE quorum [ Q != max( R , W ) ]
+     * @param itemKey of the item
+     * @param update  returns future of new version of the item out of the versions read, or of null if nothing has to be written,
+     *                fails the update by throwing
+     * @return future of created or updated item, or null if not agreed on WRITE quorum [ Q != max( R , W ) ],
+     * less than W nodes acknowledged the write or there was nothing to write
      * @see it.unitn.ds.Replication
      * @see it.unitn.ds.ServiceConfiguration
      */
+    @NotNull
+    private ListenableFuture<Item> updateReplicas(int itemKey, @NotNull final AsyncFunction<List<Item>, Item> update) {
+        final int r = KeyspaceUtil.getR(itemKey);
+        final int w = KeyspaceUtil.getW(itemKey);
+        final int quorum = Math.max(r, w);
+        final long deadline = MultithreadingUtil.getDeadline();
+        return Futures.transform(readReplicas(itemKey, quorum, deadline), new AsyncFunction<List<Item>, Item>() {
+            @Override
+            public ListenableFuture<Item> apply(@NotNull List<Item> replicas) throws Exception {
+                if (!replicas.isEmpty() && replicas.size() < quorum) {
+                    logger.debug("No can agree on WRITE quorum: Q != max(R,W) as Q=" + replicas.size() + ", R=" + r + ", W=" + w);
+                    return Futures.immediateFuture(null);
+                }
+                return Futures.transform(update.apply(replicas), new AsyncFunction<Item, Item>() {
+                    @Override
+                    public ListenableFuture<Item> apply(@Nullable final Item item) {
+                        if (item == null) {
+                            return Futures.immediateFuture(null);
+                        }
+                        return Futures.transform(writeReplicas(item, w, deadline), new Function<List<Boolean>, Item>() {
+                            @Override
+                            public Item apply(@NotNull List<Boolean> acknowledgements) {
+                                if (acknowledgements.size() < w) {
+                                    logger.debug("No can agree on WRITE quorum as acknowledgements=" + acknowledgements.size() + ", W=" + w);
+                                    return null;
+                                }
+                                logger.debug("Updated item=" + item + " with acknowledgements=" + acknowledgements.size());
+                                return item;
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Splits the range into segments owned by different nodes and belonging to different keyspaces
+     * and reads them one by one in the order of item keys, until the page is full or the range is over
+     * <p>
+     * Every segment is requested for the remaining count of items only, so memory is bounded by the page size,
+     * segments are read again from the last item read, if expired items and tombstones have been skipped
+     *
+     * @param fromKey  first item key, inclusively
+     * @param toKey    last item key, inclusively
+     * @param pageSize maximum count of items in the page
+     * @param quorum   count of nodes to read every segment from
+     * @return page of items, or null if any segment is not agreed on quorum
+     */
+    @Nullable
+    private ItemPage scanItems(int fromKey, int toKey, int pageSize, int quorum) throws RemoteException {
+        List<Item> items = new ArrayList<>();
+        int segmentKey = fromKey;
+        while (items.size() < pageSize) {
+            int nodeIdForItem = RemoteUtil.getNodeIdForItem(segmentKey, node.getNodes());
+            // keys beyond the greatest node id belong to the lowest node, which is the last segment of the range
+            int segmentEnd = nodeIdForItem >= segmentKey ? Math.min(nodeIdForItem, toKey) : toKey;
+            // segments do not cross keyspaces, so every segment is read from the nodes of it's own keyspace
+            segmentEnd = Math.min(segmentEnd, KeyspaceUtil.getEnd(segmentKey));
+            TokenRange segment = new TokenRange(segmentKey - 1, segmentEnd);
+            int limit = pageSize - items.size();
+            Map<Integer, Item> segmentItems = MultithreadingUtil.getItemRange(segment, nodeIdForItem, limit, quorum, KeyspaceUtil.getN(segmentKey), node.getNodes());
+            if (segmentItems == null) {
+                return null;
+            }
+            int count = 0;
+            int lastKey = segmentKey;
+            for (Item item : segmentItems.values()) {
+                if (count == limit) {
+                    break;
+                }
+                count++;
+                lastKey = item.getKey();
+                if (item.isLive()) {
+                    items.add(item);
+                }
+            }
+            if (count == limit && lastKey < segmentEnd) {
+                segmentKey = lastKey + 1;
+                continue;
+            }
+            if (segmentEnd == toKey) {
+                break;
+            }
+            segmentKey = segmentEnd + 1;
+        }
+        Integer nextKey = null;
+        if (items.size() == pageSize && items.get(pageSize - 1).getKey() < toKey) {
+            nextKey = items.get(pageSize - 1).getKey() + 1;
+        }
+        return new ItemPage(items, nextKey);
+    }
+
+    /**
+     * Writes copies of items and replicas to the storage and rebuilds Bloom filter of their keys
+     * <p>
+     * Copies are taken under read locks of both maps, so the storage is consistent,
+     * while items and replicas are updated concurrently under their own write locks
+     * <p>
+     * Every write costs O(items + replicas) of the node, since the whole CSV file is rewritten and the filter is rebuilt,
+     * which keeps the storage an immutable segment, but bounds write throughput of nodes holding many items
+     *
+     * @see it.unitn.ds.util.StorageUtil
+     */
+    private void persist() {
+        synchronized (storageLock) {
+            List<Item> items;
+            List<Item> replicas;
+            itemsLock.readLock().lock();
+            try {
+                items = new ArrayList<>(node.getItems().values());
+            } finally {
+                itemsLock.readLock().unlock();
+            }
+            replicasLock.readLock().lock();
+            try {
+                replicas = new ArrayList<>(node.getReplicas().values());
+            } finally {
+                replicasLock.readLock().unlock();
+            }
+            bloomFilter = BloomFilterUtil.create(items, replicas);
+            countStorage(items, replicas);
+            StorageUtil.write(node.getId(), items, replicas);
+        }
+    }
+
+    /**
+     * Moves replicas after Replication N has been changed from previousN
+     * <p>
+     * Increased N: own items are passed as replicas to the nodes, which have joined the preference list of the node.
+     * Decreased N: replicas of the predecessors, which do not have the node in their preference lists anymore, are removed
+     *
+     * @param previousN Replication N before the change
+     */
+    private void replicate(int previousN) {
+        int n = Replication.getN();
+        if (n > previousN) {
+            List<Item> items;
+            itemsLock.readLock().lock();
+            try {
+                items = new ArrayList<>(node.getItems().values());
+            } finally {
+                itemsLock.readLock().unlock();
+            }
+            Map<Integer, List<Item>> replicasByNodeId = new LinkedHashMap<>();
+            List<Integer> preferenceList = RemoteUtil.getPreferenceList(node.getId(), node.getNodes(), n);
+            preferenceList.removeAll(RemoteUtil.getPreferenceList(node.getId(), node.getNodes(), previousN));
+            for (int nodeId : preferenceList) {
+                if (!items.isEmpty()) {
+                    replicasByNodeId.put(nodeId, items);
+                }
+            }
+            MultithreadingUtil.updateReplicas(replicasByNodeId, node.getNodes());
+            MetricsUtil.add("config.replicas.passed", items.size() * replicasByNodeId.size());
+            logger.info("Passed items as replicas to nodeIds=" + replicasByNodeId.keySet() + " as Replication N changed from " + previousN + " to " + n);
+        } else {
+            List<TokenRange> staleRanges = new ArrayList<>();
+            for (TokenRange range : RemoteUtil.getReplicaRanges(node.getId(), node.getNodes(), previousN - 1)) {
+                if (!RemoteUtil.getPreferenceList(range.getEnd(), node.getNodes(), n).contains(node.getId())) {
+                    staleRanges.add(range);
+                }
+            }
+            int removed = 0;
+            replicasLock.writeLock().lock();
+            try {
+                for (TokenRange range : staleRanges) {
+                    removed += node.getReplicas(range).size();
+                    node.removeReplicas(range);
+                }
+            } finally {
+                replicasLock.writeLock().unlock();
+            }
+            persist();
+            MetricsUtil.add("config.replicas.removed", removed);
+            logger.info("Removed " + removed + " replicas in ranges=" + staleRanges + " as Replication N changed from " + previousN + " to " + n);
+        }
+    }
+
+    /**
+     * Returns token range of item keys starting from the key till the greatest possible key
+     */
+    @NotNull
+    private static TokenRange getKeyRange(int fromKey) {
+        return new TokenRange(fromKey - 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Updates size of the storage and tombstone gauges out of the copies of items and replicas
+     */
+    private void countStorage(@NotNull Collection<Item> items, @NotNull Collection<Item> replicas) {
+        int count = 0;
+        long bytes = 0;
+        long totalBytes = 0;
+        for (Item item : Iterables.concat(items, replicas)) {
+            int size = item.getSizeInBytes();
+            if (item.isTombstone()) {
+                count++;
+                bytes += size;
+            }
+            totalBytes += size;
+        }
+        tombstoneCount = count;
+        tombstoneBytes = bytes;
+        storageBytes = totalBytes;
+    }
+
+    /**
+     * Collects tombstones of expired items and tombstones older than TOMBSTONE_GRACE among the items examined by the sweep
+     * <p>
+     * Tombstones are kept for TOMBSTONE_GRACE, so all the replicas, including crashed ones, have received them
+     * before they are compacted
+     *
+     * @param items      examined items in the order of keys
+     * @param limit      maximum count of items examined
+     * @param tombstones modifiable list to add tombstones of expired items to
+     * @param compacted  modifiable list to add tombstones to remove to
+     * @return key to continue the sweep from, or 1 if all the keys have been examined
+     */
+    private static int sweep(@NotNull List<Item> items, int limit, @NotNull List<Item> tombstones, @NotNull List<Item> compacted) {
+        long now = System.currentTimeMillis();
+        for (Item item : items) {
+            if (item.isTombstone()) {
+                if (item.getDeadSince() + TOMBSTONE_GRACE <= now) {
+                    compacted.add(item);
+                }
+            } else if (item.isExpired(now)) {
+                tombstones.add(item.toTombstone());
+            }
+        }
+        MetricsUtil.add("expiry.examined", items.size());
+        MetricsUtil.add("expiry.tombstones", tombstones.size());
+        MetricsUtil.add("tombstones.compacted", compacted.size());
+        if (items.size() < limit || items.get(items.size() - 1).getKey() == Integer.MAX_VALUE) {
+            return 1;
+        }
+        return items.get(items.size() - 1).getKey() + 1;
+    }
+
+    /**
+     * Tells if the node might hold the item, nodes which definitely do not hold it are skipped by the coordinator
+     *
+     * @param nodeId     of the node
+     * @param nodeServer reference to the node
+     * @param itemKey    of the item
+     * @return false if the node definitely does not hold the item, true otherwise
+     * @see it.unitn.ds.util.BloomFilterUtil
+     */
+    private boolean mightContain(int nodeId, @NotNull NodeServer nodeServer, int itemKey) {
+        if (nodeId == node.getId()) {
+            return BloomFilterUtil.mightContain(bloomFilter, itemKey);
+        }
+        return BloomFilterUtil.mightContain(nodeId, nodeServer, itemKey);
+    }
+
+    /**
+     * Returns reference to the node in the ring, which is the current node itself if ids are the same,
+     * so requests to the current node skip RMI
+     *
+     * @param nodeId of the node
+     * @return reference to the node, or null if the node is suspected by failure detector
+     */
     @Nullable
-    private Item updateReplicas(int itemKey, @NotNull String itemValue) throws RemoteException {
-        List<Item> replicas = getReplicas(itemKey);
-        if (!replicas.isEmpty() && replicas.size() < Math.max(Replication.R, Replication.W)) {
-            logger.debug("No can agree on WRITE quorum: Q != max(R,W) as Q=" + replicas.size() + ", R=" + Replication.R + ", W=" + Replication.W);
+    private NodeServer getNodeServer(int nodeId) {
+        if (nodeId == node.getId()) {
+            return this;
+        }
+        if (GossipUtil.isSuspected(nodeId)) {
             return null;
         }
-        Item item = createOrUpdate(itemKey, itemValue, replicas);
-        Node nodeForItem = RemoteUtil.getNodeForItem(itemKey, node.getNodes());
-        RemoteUtil.getRemoteNode(nodeForItem, NodeServer.class).updateItems(Arrays.asList(item));
-        logger.debug("Updated item=" + item + " to nodeForItem=" + nodeForItem);
-        MultithreadingUtil.updateReplicas(item, nodeForItem, node.getNodes());
-        return item;
+        return RemoteUtil.getRemoteNode(new Node(nodeId, node.getNodes().get(nodeId)), NodeServer.class);
     }
 
     /**
-     * Returns new item if exists or updates existing item with new value and increased version number
+     * Returns new item if exists or updates existing item with new value and increased clock of the current node
+     * <p>
+     * Updated item supersedes all the versions read, including concurrent siblings
      *
      * @param itemKey   of the item
+     * @param rawKey    of the item, null if the item is addressed by item key and keeps it's raw key
      * @param itemValue new value of the item
+     * @param ttl       milliseconds for the item to live, 0 if the item never expires
      * @param replicas  collection of items with the same item key
      * @return created or updated item
+     * @throws KeyCollisionException if the live item has another raw key hashed to the same item key,
+     *                               or the integer key addresses the live item of a raw key
      */
     @NotNull
-    private Item createOrUpdate(int itemKey, @NotNull String itemValue, @NotNull List<Item> replicas) throws RemoteException {
-        Item item = getLatestVersion(replicas);
-        if (item == null) {
-            return new Item(itemKey, itemValue);
+    private Item createOrUpdate(int itemKey, @Nullable byte[] rawKey, @NotNull String itemValue, int ttl, @NotNull List<Item> replicas) throws KeyCollisionException {
+        Item latest = VersionUtil.getLatest(replicas);
+        Item item;
+        if (latest == null) {
+            item = new Item(itemKey, rawKey, itemValue, node.getId());
         } else {
-            item.update(itemValue);
-            return item;
+            if (latest.isLive() && (rawKey == null ? latest.getRawKey() != null : !latest.hasRawKey(rawKey))) {
+                MetricsUtil.increment("items.key.collisions");
+                throw new KeyCollisionException(rawKey == null ? String.valueOf(itemKey) : KeyUtil.toString(rawKey), itemKey);
+            }
+            item = new Item(latest, rawKey == null ? latest.getRawKey() : rawKey);
+            item.update(itemValue, node.getId());
+        }
+        if (ttl > 0) {
+            item.expireAfter(ttl);
         }
+        return item;
     }
 
     /**
-     * Returns latest version of the item among all in the collection
+     * Returns tombstone of the latest item with increased clock of the current node
+     * <p>
+     * Tombstone supersedes all the versions read, including concurrent siblings
      *
+     * @param rawKey   of the item, null if the item is addressed by item key
      * @param replicas collection of items with the same item key
-     * @return latest version item, or null if collection is empty
+     * @return new tombstone, or null if the item does not exist, is already deleted or has another raw key
      */
     @Nullable
-    private Item getLatestVersion(@NotNull List<Item> replicas) throws RemoteException {
-        Iterator<Item> iterator = replicas.iterator();
-        if (iterator.hasNext()) {
-            Item item = iterator.next();
-            while (iterator.hasNext()) {
-                Item replica = iterator.next();
-                if (replica.getVersion() > item.getVersion()) {
-                    item = replica;
-                }
-            }
-            return item;
+    private Item delete(@Nullable byte[] rawKey, @NotNull List<Item> replicas) {
+        Item latest = VersionUtil.getLatest(replicas);
+        if (latest == null || latest.isTombstone() || (rawKey != null && !latest.hasRawKey(rawKey))) {
+            return null;
         }
-        return null;
+        Item tombstone = new Item(latest);
+        tombstone.delete(node.getId());
+        return tombstone;
     }
 }
@@ -1,8 +1,13 @@
 package it.unitn.ds.rmi;
 
+import com.google.common.hash.BloomFilter;
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.Member;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.entity.TokenRange;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -20,10 +25,111 @@ public interface NodeServer extends Remote {
     @NotNull
     Map<Integer, String> getNodes() throws RemoteException;
 
+    /**
+     * Returns version of the ring topology known by the node, used by clients to detect changes of the ring cheaply
+     *
+     * @return topology version, 0 if the node is not in the ring
+     * @see it.unitn.ds.util.RemoteUtil
+     */
+    int getTopologyVersion() throws RemoteException;
+
     void addNode(int id, @NotNull String host) throws RemoteException;
 
     void removeNode(int id) throws RemoteException;
 
+    /**
+     * Returns summary of the node without items and replicas
+     *
+     * @return counts, token ranges, load and health of the node
+     */
+    @NotNull
+    NodeStatus getStatus() throws RemoteException;
+
+    /**
+     * Returns keys of own items of the node spread evenly over the items, to estimate distribution of the items
+     *
+     * @param count maximum count of keys
+     * @return up to count keys in ascending order
+     * @see it.unitn.ds.util.RebalanceUtil
+     */
+    @NotNull
+    List<Integer> sampleItemKeys(int count) throws RemoteException;
+
+    /**
+     * Moves the node to the new position in the ring, returns when the node has joined the ring with the new id
+     * <p>
+     * The node stays registered under the old id until the call returns, later requests must use the new id
+     *
+     * @param nodeId new id of the node, must not be taken by another node
+     * @see it.unitn.ds.ServerLauncher#move(int)
+     */
+    void move(int nodeId) throws RemoteException;
+
+    /**
+     * Returns own item of the node
+     *
+     * @param key of the item
+     * @return item, or null if the node does not hold the item
+     */
+    @Nullable
+    Item readItem(int key) throws RemoteException;
+
+    /**
+     * Returns replica of the node
+     *
+     * @param key of the item
+     * @return replica, or null if the node does not hold the replica
+     */
+    @Nullable
+    Item readReplica(int key) throws RemoteException;
+
+    /**
+     * Returns own items of the node in bulk
+     *
+     * @param keys of the items
+     * @return items held by the node, in the order of keys
+     */
+    @NotNull
+    List<Item> readItems(@NotNull List<Integer> keys) throws RemoteException;
+
+    /**
+     * Returns replicas of the node in bulk
+     *
+     * @param keys of the items
+     * @return replicas held by the node, in the order of keys
+     */
+    @NotNull
+    List<Item> readReplicas(@NotNull List<Integer> keys) throws RemoteException;
+
+    /**
+     * Returns Bloom filter of keys of items and replicas of the node, used to skip the node for missing items
+     *
+     * @return filter, which never misses keys held by the node at the time of the request
+     * @see it.unitn.ds.util.BloomFilterUtil
+     */
+    @NotNull
+    BloomFilter<Integer> getBloomFilter() throws RemoteException;
+
+    /**
+     * Replaces expired own items with tombstones, examining items in the order of keys
+     *
+     * @param fromKey first item key to examine
+     * @param limit   maximum count of items to examine
+     * @return item key to continue from, or 1 if all items have been examined
+     * @see it.unitn.ds.util.ExpiryUtil
+     */
+    int expireItems(int fromKey, int limit) throws RemoteException;
+
+    /**
+     * Replaces expired replicas with tombstones, examining replicas in the order of keys
+     *
+     * @param fromKey first item key to examine
+     * @param limit   maximum count of replicas to examine
+     * @return item key to continue from, or 1 if all replicas have been examined
+     * @see it.unitn.ds.util.ExpiryUtil
+     */
+    int expireReplicas(int fromKey, int limit) throws RemoteException;
+
     void updateItems(@NotNull List<Item> items) throws RemoteException;
 
     void removeItems(@NotNull List<Item> items) throws RemoteException;
@@ -31,4 +137,91 @@ public interface NodeServer extends Remote {
     void updateReplicas(@NotNull List<Item> replicas) throws RemoteException;
 
     void removeReplicas(@NotNull List<Item> replicas) throws RemoteException;
+
+    /**
+     * Returns own items of the node in the token range
+     *
+     * @param range of item keys
+     * @return items in the range
+     * @see it.unitn.ds.entity.TokenRange
+     */
+    @NotNull
+    List<Item> getItemRange(@NotNull TokenRange range) throws RemoteException;
+
+    /**
+     * Returns first own items of the node in the token range
+     *
+     * @param range of item keys
+     * @param limit maximum count of items
+     * @return up to limit items in the range
+     */
+    @NotNull
+    List<Item> getItemRange(@NotNull TokenRange range, int limit) throws RemoteException;
+
+    /**
+     * Removes own items of the node in the token range as a whole
+     *
+     * @param range of item keys
+     */
+    void removeItemRange(@NotNull TokenRange range) throws RemoteException;
+
+    /**
+     * Returns replicas of the node in the token range
+     *
+     * @param range of item keys
+     * @return replicas in the range
+     */
+    @NotNull
+    List<Item> getReplicaRange(@NotNull TokenRange range) throws RemoteException;
+
+    /**
+     * Returns first replicas of the node in the token range
+     *
+     * @param range of item keys
+     * @param limit maximum count of replicas
+     * @return up to limit replicas in the range
+     */
+    @NotNull
+    List<Item> getReplicaRange(@NotNull TokenRange range, int limit) throws RemoteException;
+
+    /**
+     * Removes replicas of the node in the token range as a whole
+     *
+     * @param range of item keys
+     */
+    void removeReplicaRange(@NotNull TokenRange range) throws RemoteException;
+
+    /**
+     * Stores batch of bulk loaded items and replicas without quorum requests, the newer versions win as on update
+     * <p>
+     * Storage is written only when the load is flushed, so loaded items are visible to reads after the last batch
+     *
+     * @param items    own items of the node
+     * @param replicas replicas of the node
+     * @param flush    true for the last batch of the load
+     * @see it.unitn.ds.util.BulkLoadUtil
+     */
+    void loadItems(@NotNull List<Item> items, @NotNull List<Item> replicas, boolean flush) throws RemoteException;
+
+    /**
+     * Exchanges membership of the ring
+     *
+     * @param members membership view of the calling node
+     * @return membership view of the called node after merge
+     * @see it.unitn.ds.util.GossipUtil
+     */
+    @NotNull
+    Map<Integer, Member> gossip(@NotNull Map<Integer, Member> members) throws RemoteException;
+
+    /**
+     * Applies changes of the service configuration to the node at runtime
+     * <p>
+     * Change of Replication N moves replicas, so the node keeps replicas of exactly N - 1 predecessors
+     *
+     * @param properties Map<Key, Value> of new values of the parameters
+     * @return version of the configuration of the node after the change
+     * @throws RemoteException if the parameters cannot be changed at runtime or the new values are not valid
+     * @see it.unitn.ds.ServiceConfiguration#RUNTIME_KEYS
+     */
+    int configure(@NotNull Map<String, String> properties) throws RemoteException;
 }
@@ -1,7 +1,13 @@
 package it.unitn.ds.rmi;
 
+import com.google.common.hash.BloomFilter;
 import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.ItemPage;
+import it.unitn.ds.entity.Member;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.entity.TokenRange;
+import it.unitn.ds.util.BloomFilterUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -13,6 +19,11 @@ import java.util.Map;
 
 /**
  * Used to simulate crashed node or in case of network errors
+ * <p>
+ * Reads and writes of the coordinator fail as if the node was not reachable, so circuit breakers of other nodes open
+ * instead of taking empty replies for missing items or acknowledgements of writes, which have not been stored
+ *
+ * @see it.unitn.ds.util.CircuitBreakerUtil
  */
 public final class NullNodeRemote extends UnicastRemoteObject implements NodeServer, NodeClient {
 
@@ -35,6 +46,17 @@ public final class NullNodeRemote extends UnicastRemoteObject implements NodeSer
         return Collections.emptyMap();
     }
 
+    @NotNull
+    @Override
+    public NodeStatus getStatus() throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Override
+    public int getTopologyVersion() throws RemoteException {
+        return 0;
+    }
+
     @Override
     public void addNode(int id, @NotNull String host) throws RemoteException {
     }
@@ -43,20 +65,125 @@ public final class NullNodeRemote extends UnicastRemoteObject implements NodeSer
     public void removeNode(int id) throws RemoteException {
     }
 
+    @Nullable
+    @Override
+    public Item readItem(int key) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Nullable
+    @Override
+    public Item readReplica(int key) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public List<Integer> sampleItemKeys(int count) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Override
+    public void move(int nodeId) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public List<Item> readItems(@NotNull List<Integer> keys) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public List<Item> readReplicas(@NotNull List<Integer> keys) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public BloomFilter<Integer> getBloomFilter() throws RemoteException {
+        return BloomFilterUtil.create(Collections.<Item>emptyList(), Collections.<Item>emptyList());
+    }
+
+    @Override
+    public int expireItems(int fromKey, int limit) throws RemoteException {
+        return 1;
+    }
+
+    @Override
+    public int expireReplicas(int fromKey, int limit) throws RemoteException {
+        return 1;
+    }
+
     @Override
     public void updateItems(@NotNull List<Item> items) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Override
+    public void loadItems(@NotNull List<Item> items, @NotNull List<Item> replicas, boolean flush) throws RemoteException {
+        throw new RemoteException("Node has crashed");
     }
 
     @Override
     public void removeItems(@NotNull List<Item> items) throws RemoteException {
+        throw new RemoteException("Node has crashed");
     }
 
     @Override
     public void updateReplicas(@NotNull List<Item> replicas) throws RemoteException {
+        throw new RemoteException("Node has crashed");
     }
 
     @Override
     public void removeReplicas(@NotNull List<Item> replicas) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getItemRange(@NotNull TokenRange range) throws RemoteException {
+        return Collections.emptyList();
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getItemRange(@NotNull TokenRange range, int limit) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Override
+    public void removeItemRange(@NotNull TokenRange range) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getReplicaRange(@NotNull TokenRange range) throws RemoteException {
+        return Collections.emptyList();
+    }
+
+    @NotNull
+    @Override
+    public List<Item> getReplicaRange(@NotNull TokenRange range, int limit) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @Override
+    public void removeReplicaRange(@NotNull TokenRange range) throws RemoteException {
+        throw new RemoteException("Node has crashed");
+    }
+
+    @NotNull
+    @Override
+    public Map<Integer, Member> gossip(@NotNull Map<Integer, Member> members) throws RemoteException {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public int configure(@NotNull Map<String, String> properties) throws RemoteException {
+        return 0;
     }
 
     @Nullable
@@ -70,4 +197,64 @@ public final class NullNodeRemote extends UnicastRemoteObject implements NodeSer
     public Item updateItem(int key, @NotNull String value) throws RemoteException {
         return null;
     }
+
+    @Nullable
+    @Override
+    public Item updateItem(int key, @NotNull String value, int ttl) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(int key) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item getItem(@NotNull String keyspace, int key) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item updateItem(@NotNull String keyspace, int key, @NotNull String value, int ttl) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(@NotNull String keyspace, int key) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item getItem(@NotNull byte[] key) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item updateItem(@NotNull byte[] key, @NotNull String value, int ttl) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Item deleteItem(@NotNull byte[] key) throws RemoteException {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public ItemPage getItems(int fromKey, int toKey, int limit, int quorum) throws RemoteException {
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Number> getMetrics() throws RemoteException {
+        return Collections.emptyMap();
+    }
 }
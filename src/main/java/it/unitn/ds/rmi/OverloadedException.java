@@ -0,0 +1,43 @@
+package it.unitn.ds.rmi;
+
+import it.unitn.ds.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.rmi.RemoteException;
+
+/**
+ * Thrown by the coordinator, which rejected the request without executing it, since the concurrency limit
+ * of the operation or the request quota of the keyspace has been reached
+ * <p>
+ * The request has no effect and can be retried later or on another node of the item preference list
+ * <p>
+ * RMI delivers the exception to the client wrapped in ServerException, so clients check the cause with isCause
+ *
+ * @see it.unitn.ds.util.AdmissionUtil
+ * @see it.unitn.ds.util.KeyspaceUtil
+ */
+public final class OverloadedException extends RemoteException {
+
+    public OverloadedException(@NotNull Operation operation, int limit) {
+        super("Node is overloaded with " + operation + " requests, limit=" + limit);
+    }
+
+    public OverloadedException(@NotNull String keyspace, int requestsPerSecond) {
+        super("Keyspace=" + keyspace + " is over quota of requestsPerSecond=" + requestsPerSecond);
+    }
+
+    /**
+     * Tells if the request has been rejected by the overloaded node
+     *
+     * @param e thrown by the remote call
+     * @return true if the exception or one of it's causes is OverloadedException
+     */
+    public static boolean isCause(@NotNull Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OverloadedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
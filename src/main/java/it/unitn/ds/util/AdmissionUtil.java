@@ -0,0 +1,211 @@
+package it.unitn.ds.util;
+
+import it.unitn.ds.Operation;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.rmi.OverloadedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to admit client requests to the coordinator under adaptive concurrency limits, one per operation
+ * <p>
+ * Limits follow AIMD: every request completed within ADMISSION_LATENCY_TARGET increases the limit by 1 / limit,
+ * so the limit grows by 1 per round of requests up to the configured maximum, every slower request halves the limit
+ * at most once per ADMISSION_LATENCY_TARGET
+ * <p>
+ * Requests above the limit are rejected at once with OverloadedException instead of queueing up
+ * until Replication timeout, so a hot coordinator keeps serving admitted requests within the target
+ * <p>
+ * Maximum limits and the target can be changed at runtime, maximum limit of 0 admits all requests of the operation
+ *
+ * @see it.unitn.ds.Operation
+ * @see it.unitn.ds.rmi.OverloadedException
+ * @see it.unitn.ds.util.MetricsUtil
+ */
+public abstract class AdmissionUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Limits never go below, so the coordinator keeps probing latency while overloaded
+     */
+    private static final int MIN_LIMIT = 1;
+
+    private static final double BACKOFF_RATIO = 0.5;
+
+    /**
+     * Concurrency limit of one operation and count of requests in flight
+     */
+    private static final class Limiter {
+
+        private final Operation operation;
+
+        private int maxLimit;
+
+        private double limit;
+
+        private int inFlight;
+
+        private long decreasedAt = System.nanoTime();
+
+        private Limiter(@NotNull Operation operation, int maxLimit) {
+            this.operation = operation;
+            this.maxLimit = maxLimit;
+            this.limit = maxLimit;
+        }
+
+        private synchronized void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            this.limit = maxLimit;
+        }
+
+        private synchronized boolean tryAcquire() {
+            if (maxLimit > 0 && inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        private synchronized void release(long latency) {
+            inFlight--;
+            if (maxLimit <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long target = getLatencyTarget();
+            if (latency <= target) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            } else if (now - decreasedAt >= target) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                decreasedAt = now;
+                logger.debug("Decreased limit of " + operation + " requests to " + (int) limit + " as latency=" + TimeUnit.NANOSECONDS.toMillis(latency) + "ms");
+            }
+        }
+
+        private synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        private synchronized int getInFlight() {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Map<Operation, Limiter>
+     */
+    private static final Map<Operation, Limiter> limiters = new EnumMap<>(Operation.class);
+
+    static {
+        for (Operation operation : Operation.values()) {
+            addLimiter(operation, getMaxLimit(operation));
+        }
+    }
+
+    /**
+     * Admits the request or rejects it if the limit of the operation has been reached
+     *
+     * @param operation of the request
+     * @return nanoseconds when the request has been admitted, to be passed to release
+     * @throws OverloadedException if the request has been rejected
+     */
+    public static long acquire(@NotNull Operation operation) throws OverloadedException {
+        Limiter limiter = limiters.get(operation);
+        if (!limiter.tryAcquire()) {
+            MetricsUtil.increment(getMetricName("shed", operation));
+            throw new OverloadedException(operation, limiter.getLimit());
+        }
+        MetricsUtil.increment(getMetricName("admitted", operation));
+        return System.nanoTime();
+    }
+
+    /**
+     * Completes the admitted request and adjusts the limit of the operation to the latency of the request
+     *
+     * @param operation  of the request
+     * @param admittedAt nanoseconds returned by acquire
+     */
+    public static void release(@NotNull Operation operation, long admittedAt) {
+        limiters.get(operation).release(System.nanoTime() - admittedAt);
+    }
+
+    /**
+     * Returns count of requests of all operations admitted since start
+     */
+    public static long getAdmitted() {
+        long admitted = 0;
+        for (Operation operation : Operation.values()) {
+            admitted += MetricsUtil.getCount(getMetricName("admitted", operation));
+        }
+        return admitted;
+    }
+
+    /**
+     * Returns count of requests of all operations in flight
+     */
+    public static int getInFlight() {
+        int inFlight = 0;
+        for (Limiter limiter : limiters.values()) {
+            inFlight += limiter.getInFlight();
+        }
+        return inFlight;
+    }
+
+    /**
+     * Resets limits of the operations to the configured maximum limits, after the configuration has been changed
+     *
+     * @see it.unitn.ds.ServiceConfiguration#apply(java.util.Map)
+     */
+    public static void reconfigure() {
+        for (Operation operation : Operation.values()) {
+            int maxLimit = getMaxLimit(operation);
+            limiters.get(operation).setMaxLimit(maxLimit);
+            logger.debug("Reset limit of " + operation + " requests to " + maxLimit);
+        }
+    }
+
+    private static int getMaxLimit(@NotNull Operation operation) {
+        switch (operation) {
+            case READ:
+                return ServiceConfiguration.getAdmissionLimitRead();
+            case WRITE:
+                return ServiceConfiguration.getAdmissionLimitWrite();
+            default:
+                return ServiceConfiguration.getAdmissionLimitScan();
+        }
+    }
+
+    private static long getLatencyTarget() {
+        return TimeUnit.MILLISECONDS.toNanos(ServiceConfiguration.getAdmissionLatencyTarget());
+    }
+
+    private static void addLimiter(@NotNull Operation operation, int maxLimit) {
+        final Limiter limiter = new Limiter(operation, maxLimit);
+        limiters.put(operation, limiter);
+        MetricsUtil.register(getMetricName("limit", operation), new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return limiter.getLimit();
+            }
+        });
+        MetricsUtil.register(getMetricName("inflight", operation), new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return limiter.getInFlight();
+            }
+        });
+    }
+
+    @NotNull
+    private static String getMetricName(@NotNull String name, @NotNull Operation operation) {
+        return "admission." + name + "." + operation.name().toLowerCase();
+    }
+}
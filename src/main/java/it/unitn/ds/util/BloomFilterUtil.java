@@ -0,0 +1,160 @@
+package it.unitn.ds.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Item;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to skip requests to the nodes, which definitely do not hold the item
+ * <p>
+ * Every node keeps Bloom filter of keys of it's items and replicas, rebuilt with every write of the node storage,
+ * other nodes fetch the filter and cache it for BLOOM_FILTER_TTL
+ * <p>
+ * Items written through the current coordinator are added to cached filters, items written through other coordinators
+ * may be missed by cached filters for BLOOM_FILTER_TTL at most, so the coordinator never skips more nodes
+ * than it's quorum leaves out
+ * <p>
+ * Guava Bloom filter is not thread safe, so every filter is accessed under it's own monitor
+ *
+ * @see com.google.common.hash.BloomFilter
+ * @see it.unitn.ds.rmi.NodeRemote
+ */
+public abstract class BloomFilterUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final double BLOOM_FILTER_FPP = ServiceConfiguration.getBloomFilterFpp();
+
+    private static final long BLOOM_FILTER_TTL = ServiceConfiguration.getBloomFilterTtl();
+
+    /**
+     * Minimal expected count of keys, so filters of small nodes do not have to be rebuilt for precision
+     */
+    private static final int MIN_EXPECTED_KEYS = 128;
+
+    /**
+     * Map<NodeId, BloomFilter>
+     */
+    private static final Cache<Integer, BloomFilter<Integer>> filters = CacheBuilder.newBuilder()
+            .expireAfterWrite(BLOOM_FILTER_TTL, TimeUnit.MILLISECONDS)
+            .build();
+
+    static {
+        MetricsUtil.register("bloom.falsePositiveRate", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                long negatives = MetricsUtil.getCount("bloom.negatives");
+                long falsePositives = MetricsUtil.getCount("bloom.falsePositives");
+                return negatives + falsePositives == 0 ? 0.0 : (double) falsePositives / (negatives + falsePositives);
+            }
+        });
+    }
+
+    /**
+     * Creates filter of keys of items and replicas of the node
+     *
+     * @param items    of the node
+     * @param replicas of the node
+     * @return new filter
+     */
+    @NotNull
+    public static BloomFilter<Integer> create(@NotNull Collection<Item> items, @NotNull Collection<Item> replicas) {
+        int expected = Math.max(MIN_EXPECTED_KEYS, 2 * (items.size() + replicas.size()));
+        BloomFilter<Integer> filter = BloomFilter.create(Funnels.integerFunnel(), expected, BLOOM_FILTER_FPP);
+        for (Item item : items) {
+            filter.put(item.getKey());
+        }
+        for (Item replica : replicas) {
+            filter.put(replica.getKey());
+        }
+        return filter;
+    }
+
+    /**
+     * Tells if the filter might contain the item key
+     *
+     * @param filter  of the node
+     * @param itemKey of the item
+     * @return false if the node definitely does not hold the item, true otherwise
+     */
+    public static boolean mightContain(@NotNull BloomFilter<Integer> filter, int itemKey) {
+        boolean mightContain;
+        synchronized (filter) {
+            mightContain = filter.mightContain(itemKey);
+        }
+        if (!mightContain) {
+            MetricsUtil.increment("bloom.negatives");
+        }
+        return mightContain;
+    }
+
+    /**
+     * Tells if the remote node might hold the item, fetching filter of the node if it is not cached
+     *
+     * @param nodeId     of the remote node
+     * @param nodeServer reference to the remote node
+     * @param itemKey    of the item
+     * @return false if the node definitely does not hold the item, true otherwise or if filter could not be fetched
+     */
+    public static boolean mightContain(int nodeId, @NotNull final NodeServer nodeServer, int itemKey) {
+        if (!isEnabled()) {
+            return true;
+        }
+        try {
+            return mightContain(filters.get(nodeId, new Callable<BloomFilter<Integer>>() {
+                @Override
+                public BloomFilter<Integer> call() throws Exception {
+                    return nodeServer.getBloomFilter();
+                }
+            }), itemKey);
+        } catch (Exception e) {
+            logger.debug("Failed to fetch bloom filter of nodeId=" + nodeId, e);
+            return true;
+        }
+    }
+
+    /**
+     * Adds the item key to the cached filter of the remote node, when the item is written to the node
+     *
+     * @param nodeId  of the remote node
+     * @param itemKey of the item
+     */
+    public static void put(int nodeId, int itemKey) {
+        BloomFilter<Integer> filter = filters.getIfPresent(nodeId);
+        if (filter != null) {
+            synchronized (filter) {
+                filter.put(itemKey);
+            }
+        }
+    }
+
+    /**
+     * Records the node, which did not hold the item, although it's filter might have contained it
+     */
+    public static void recordFalsePositive() {
+        MetricsUtil.increment("bloom.falsePositives");
+    }
+
+    /**
+     * Removes all cached filters of remote nodes
+     */
+    public static void invalidateAll() {
+        filters.invalidateAll();
+    }
+
+    private static boolean isEnabled() {
+        return BLOOM_FILTER_TTL > 0;
+    }
+}
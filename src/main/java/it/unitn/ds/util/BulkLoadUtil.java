@@ -0,0 +1,148 @@
+package it.unitn.ds.util;
+
+import com.google.common.base.Charsets;
+import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Convenient class for the client to bulk load items from CSV file straight into the nodes of the ring
+ * <p>
+ * CSV file has the format written by StorageUtil, lines are partitioned by the preference list of the item:
+ * the responsible node receives the item, it's Replication N - 1 successors receive replicas of it
+ * <p>
+ * Items are sent in batches of LOAD_BATCH_SIZE sorted by key, at most MAX_PENDING_BATCHES per node are in flight,
+ * so the file is streamed with bounded memory. Nodes store the batches without quorum requests
+ * and write their storage once, when the load is flushed with the last batch
+ *
+ * @see it.unitn.ds.util.StorageUtil
+ * @see it.unitn.ds.rmi.NodeServer#loadItems(java.util.List, java.util.List, boolean)
+ */
+public abstract class BulkLoadUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final int LOAD_BATCH_SIZE = ServiceConfiguration.getLoadBatchSize();
+
+    private static final int MAX_PENDING_BATCHES = 2;
+
+    private static final Comparator<Item> BY_KEY = new Comparator<Item>() {
+        @Override
+        public int compare(Item o1, Item o2) {
+            return Integer.compare(o1.getKey(), o2.getKey());
+        }
+    };
+
+    /**
+     * Items and replicas to be sent to one node
+     */
+    private static final class Batch {
+
+        private final List<Item> items = new ArrayList<>();
+
+        private final List<Item> replicas = new ArrayList<>();
+
+        private int size() {
+            return items.size() + replicas.size();
+        }
+    }
+
+    /**
+     * Loads all items of the CSV file into the ring
+     *
+     * @param path  of CSV file
+     * @param nodes set of nodes of the ring
+     * @return count of loaded items, not counting replicas
+     * @throws IOException if the file cannot be read or a batch cannot be loaded to a node
+     */
+    public static int load(@NotNull Path path, @NotNull final Map<Integer, String> nodes) throws IOException {
+        ExecutorService executorService = MultithreadingUtil.newExecutorService("load-%d", nodes.size());
+        Map<Integer, Batch> batches = new HashMap<>();
+        Deque<Future<Void>> pending = new ArrayDeque<>();
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, Charsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Item item = StorageUtil.parseItem(line);
+                List<Integer> preferenceList = RemoteUtil.getPreferenceList(item.getKey(), nodes, Replication.getN());
+                for (int nodeId : preferenceList) {
+                    Batch batch = batches.get(nodeId);
+                    if (batch == null) {
+                        batch = new Batch();
+                        batches.put(nodeId, batch);
+                    }
+                    if (nodeId == preferenceList.get(0)) {
+                        batch.items.add(item);
+                    } else {
+                        batch.replicas.add(item);
+                    }
+                    if (batch.size() >= LOAD_BATCH_SIZE) {
+                        pending.add(executorService.submit(send(nodeId, nodes, batch, false)));
+                        batches.remove(nodeId);
+                    }
+                }
+                while (pending.size() > MAX_PENDING_BATCHES * nodes.size()) {
+                    await(pending.poll());
+                }
+                count++;
+            }
+            while (!pending.isEmpty()) {
+                await(pending.poll());
+            }
+            for (int nodeId : nodes.keySet()) {
+                Batch batch = batches.containsKey(nodeId) ? batches.get(nodeId) : new Batch();
+                pending.add(executorService.submit(send(nodeId, nodes, batch, true)));
+            }
+            while (!pending.isEmpty()) {
+                await(pending.poll());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return count;
+    }
+
+    @NotNull
+    private static Callable<Void> send(final int nodeId, @NotNull final Map<Integer, String> nodes, @NotNull final Batch batch, final boolean flush) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Collections.sort(batch.items, BY_KEY);
+                Collections.sort(batch.replicas, BY_KEY);
+                RemoteUtil.getRemoteNode(new Node(nodeId, nodes.get(nodeId)), NodeServer.class).loadItems(batch.items, batch.replicas, flush);
+                logger.debug("Loaded " + batch.items.size() + " items and " + batch.replicas.size() + " replicas to nodeId=" + nodeId + ", flush=" + flush);
+                return null;
+            }
+        };
+    }
+
+    private static void await(@NotNull Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while loading items", e);
+        } catch (ExecutionException e) {
+            throw new RemoteException("Failed to load batch of items", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package it.unitn.ds.util;
+
+import java.util.Arrays;
+
+/**
+ * Circuit breaker of requests to a single remote node, which also keeps the history of latencies of the node
+ * <p>
+ * CLOSED circuit lets all requests through, after the given count of consecutive failures it gets OPEN
+ * and rejects requests at once, after the open time it gets HALF_OPEN and lets one probe request through,
+ * which either closes the circuit on success or opens it again on failure
+ *
+ * @see it.unitn.ds.util.CircuitBreakerUtil
+ */
+public final class CircuitBreaker {
+
+    private static final int MAX_SAMPLES = 128;
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    /**
+     * Latencies of the last MAX_SAMPLES successful requests in nanoseconds, used as a ring buffer
+     */
+    private final long[] latencies = new long[MAX_SAMPLES];
+
+    private final int maxFailures;
+
+    private final long openTime;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    private int samples;
+
+    /**
+     * @param maxFailures count of consecutive failures to open the circuit
+     * @param openTime    time in nanoseconds to reject requests before the probe
+     */
+    public CircuitBreaker(int maxFailures, long openTime) {
+        this.maxFailures = maxFailures;
+        this.openTime = openTime;
+    }
+
+    /**
+     * Tells if the request can be sent to the node, the first request after the open time becomes the probe
+     *
+     * @param now current time in nanoseconds
+     * @return false if the circuit is open or the probe is in flight, true otherwise
+     */
+    public synchronized boolean allowRequest(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt >= openTime) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tells if the request might be sent to the node, without taking the probe
+     *
+     * @param now current time in nanoseconds
+     * @return false if the circuit is open or the probe is in flight, true otherwise
+     */
+    public synchronized boolean isAvailable(long now) {
+        return state == State.CLOSED || state == State.OPEN && now - openedAt >= openTime;
+    }
+
+    /**
+     * Records the successful request and closes the circuit
+     *
+     * @param latency of the request in nanoseconds
+     */
+    public synchronized void success(long latency) {
+        latencies[samples % MAX_SAMPLES] = latency;
+        samples++;
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records the failed or timed out request
+     *
+     * @param now current time in nanoseconds
+     * @return true if the circuit has been opened by this failure
+     */
+    public synchronized boolean failure(long now) {
+        failures++;
+        if (state == State.HALF_OPEN || state == State.CLOSED && failures >= maxFailures) {
+            state = State.OPEN;
+            openedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Returns the percentile of latencies of recent successful requests
+     *
+     * @param percentile between 0 and 1
+     * @return latency in nanoseconds, or -1 if less than minSamples requests have been recorded
+     */
+    public synchronized long getLatency(double percentile, int minSamples) {
+        int count = Math.min(samples, MAX_SAMPLES);
+        if (count < minSamples || count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) (percentile * count))];
+    }
+}
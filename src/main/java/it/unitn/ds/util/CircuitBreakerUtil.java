@@ -0,0 +1,166 @@
+package it.unitn.ds.util;
+
+import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to keep circuit breakers and latencies of requests from the coordinator to the replicas
+ * <p>
+ * Timeout of the request to the node is REPLICA_TIMEOUT_MULTIPLIER times REPLICA_TIMEOUT_PERCENTILE of latencies
+ * observed from the node, at least REPLICA_TIMEOUT_MIN and at most Replication timeout, so a slow replica
+ * is given up on as soon as it is slower than usual and the quorum moves on to another replica,
+ * percentile and minimum are read on every request, so they can be changed at runtime
+ * <p>
+ * After CIRCUIT_BREAKER_FAILURES consecutive failures or timeouts the node is not sent requests
+ * for CIRCUIT_BREAKER_OPEN_TIME, then one probe request decides if the node is healthy again
+ *
+ * @see it.unitn.ds.util.CircuitBreaker
+ * @see it.unitn.ds.util.MultithreadingUtil
+ */
+public abstract class CircuitBreakerUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final int CIRCUIT_BREAKER_FAILURES = ServiceConfiguration.getCircuitBreakerFailures();
+
+    private static final long CIRCUIT_BREAKER_OPEN_TIME = TimeUnit.MILLISECONDS.toNanos(ServiceConfiguration.getCircuitBreakerOpenTime());
+
+    private static final int REPLICA_TIMEOUT_MULTIPLIER = 3;
+
+    /**
+     * Count of latencies of the node to be observed before the timeout is derived from them
+     */
+    private static final int MIN_SAMPLES = 16;
+
+    /**
+     * Map<NodeId, CircuitBreaker>
+     */
+    private static final ConcurrentMap<Integer, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    static {
+        MetricsUtil.register("circuit.open", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return getOpenCount();
+            }
+        });
+    }
+
+    /**
+     * Tells if the request can be sent to the node
+     *
+     * @param nodeId of the node
+     * @return false if the circuit of the node is open, true otherwise
+     */
+    public static boolean allowRequest(int nodeId) {
+        if (!getBreaker(nodeId).allowRequest(System.nanoTime())) {
+            MetricsUtil.increment("circuit.rejected");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the successful request to the node
+     *
+     * @param nodeId  of the node
+     * @param latency of the request in nanoseconds
+     */
+    public static void success(int nodeId, long latency) {
+        getBreaker(nodeId).success(latency);
+    }
+
+    /**
+     * Records the failed or timed out request to the node
+     *
+     * @param nodeId of the node
+     */
+    public static void failure(int nodeId) {
+        if (getBreaker(nodeId).failure(System.nanoTime())) {
+            MetricsUtil.increment("circuit.opened");
+            logger.debug("Opened circuit of nodeId=" + nodeId);
+        }
+    }
+
+    /**
+     * Returns count of nodes with open circuits
+     */
+    public static int getOpenCount() {
+        int open = 0;
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (breaker.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Returns timeout of the request to the node derived from the observed latencies of the node
+     *
+     * @param nodeId of the node
+     * @return timeout in milliseconds, Replication timeout until enough latencies have been observed
+     * @see it.unitn.ds.Replication
+     */
+    public static long getTimeout(int nodeId) {
+        long maxTimeout = Replication.getTimeout().getUnit().toMillis(Replication.getTimeout().getValue());
+        long latency = getBreaker(nodeId).getLatency(ServiceConfiguration.getReplicaTimeoutPercentile(), MIN_SAMPLES);
+        if (latency < 0) {
+            return maxTimeout;
+        }
+        long timeout = REPLICA_TIMEOUT_MULTIPLIER * TimeUnit.NANOSECONDS.toMillis(latency);
+        return Math.min(maxTimeout, Math.max(ServiceConfiguration.getReplicaTimeoutMin(), timeout));
+    }
+
+    /**
+     * Orders the nodes, so the nodes with closed circuits go first, local nodes among them before the rest,
+     * then the nodes with lower median latency, nodes which have not been observed yet are considered fast,
+     * nodes with open circuits go last
+     *
+     * @param nodeIds      of the nodes
+     * @param localNodeIds of the nodes in the same zone as current process
+     * @return new list of node ids in the order of preference
+     */
+    @NotNull
+    public static List<Integer> prefer(@NotNull Collection<Integer> nodeIds, @NotNull final Set<Integer> localNodeIds) {
+        long now = System.nanoTime();
+        // ranks are taken once, so concurrent updates of latencies do not break the order while sorting
+        final Map<Integer, Long> ranks = new HashMap<>();
+        for (int nodeId : nodeIds) {
+            CircuitBreaker breaker = getBreaker(nodeId);
+            ranks.put(nodeId, breaker.isAvailable(now) ? breaker.getLatency(0.5, 1) : Long.MAX_VALUE);
+        }
+        List<Integer> preferred = new ArrayList<>(nodeIds);
+        Collections.sort(preferred, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                boolean available1 = ranks.get(o1) != Long.MAX_VALUE;
+                boolean available2 = ranks.get(o2) != Long.MAX_VALUE;
+                if (available1 && available2 && localNodeIds.contains(o1) != localNodeIds.contains(o2)) {
+                    return localNodeIds.contains(o1) ? -1 : 1;
+                }
+                return Long.compare(ranks.get(o1), ranks.get(o2));
+            }
+        });
+        return preferred;
+    }
+
+    @NotNull
+    private static CircuitBreaker getBreaker(int nodeId) {
+        CircuitBreaker breaker = breakers.get(nodeId);
+        if (breaker == null) {
+            breakers.putIfAbsent(nodeId, new CircuitBreaker(CIRCUIT_BREAKER_FAILURES, CIRCUIT_BREAKER_OPEN_TIME));
+            breaker = breakers.get(nodeId);
+        }
+        return breaker;
+    }
+}
@@ -0,0 +1,182 @@
+package it.unitn.ds.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import it.unitn.ds.Compression;
+import it.unitn.ds.ServiceConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Convenient class to compress item values above COMPRESSION_THRESHOLD characters with the codec of their keyspace
+ * <p>
+ * Encoded value starts with the ordinal of the codec, so values are decoded regardless of the current configuration
+ * <p>
+ * In CSV file compressed values are written in Base64 after TEXT_PREFIX, values starting with TEXT_PREFIX
+ * are always encoded, so any value is read back as written
+ *
+ * @see it.unitn.ds.Compression
+ * @see it.unitn.ds.util.KeyspaceUtil
+ * @see it.unitn.ds.util.StorageUtil
+ * @see it.unitn.ds.entity.Item
+ */
+public abstract class CompressionUtil {
+
+    private static final int COMPRESSION_THRESHOLD = ServiceConfiguration.getCompressionThreshold();
+
+    private static final String TEXT_PREFIX = "~";
+
+    /**
+     * Compresses and decompresses bytes
+     */
+    public interface Codec {
+
+        @NotNull
+        byte[] compress(@NotNull byte[] data) throws IOException;
+
+        @NotNull
+        byte[] decompress(@NotNull byte[] data) throws IOException;
+    }
+
+    private static final Map<Compression, Codec> codecs = new EnumMap<>(Compression.class);
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    static {
+        codecs.put(Compression.NONE, new Codec() {
+            @NotNull
+            @Override
+            public byte[] compress(@NotNull byte[] data) {
+                return data;
+            }
+
+            @NotNull
+            @Override
+            public byte[] decompress(@NotNull byte[] data) {
+                return data;
+            }
+        });
+        codecs.put(Compression.DEFLATE, new Codec() {
+            @NotNull
+            @Override
+            public byte[] compress(@NotNull byte[] data) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+                try (DeflaterOutputStream stream = new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED))) {
+                    stream.write(data);
+                }
+                return bytes.toByteArray();
+            }
+
+            @NotNull
+            @Override
+            public byte[] decompress(@NotNull byte[] data) throws IOException {
+                try (InflaterInputStream stream = new InflaterInputStream(new ByteArrayInputStream(data))) {
+                    return ByteStreams.toByteArray(stream);
+                }
+            }
+        });
+        MetricsUtil.register("compression.ratio", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                long compressed = MetricsUtil.getCount("compression.bytes.compressed");
+                return compressed == 0 ? 1.0 : (double) MetricsUtil.getCount("compression.bytes.raw") / compressed;
+            }
+        });
+    }
+
+    /**
+     * Encodes the value, compressing it if it is longer than COMPRESSION_THRESHOLD and compression saves space
+     *
+     * @param value to encode
+     * @param codec to compress the value with
+     * @return ordinal of the codec followed by the encoded value
+     */
+    @NotNull
+    public static byte[] encode(@NotNull String value, @NotNull Compression codec) throws IOException {
+        byte[] data = value.getBytes(Charsets.UTF_8);
+        Compression compression = Compression.NONE;
+        if (codec != Compression.NONE && value.length() >= COMPRESSION_THRESHOLD) {
+            long start = getCpuTime();
+            byte[] compressed = codecs.get(codec).compress(data);
+            MetricsUtil.add("compression.compress.nanos", getCpuTime() - start);
+            if (compressed.length < data.length) {
+                MetricsUtil.add("compression.bytes.raw", data.length);
+                MetricsUtil.add("compression.bytes.compressed", compressed.length);
+                compression = codec;
+                data = compressed;
+            }
+        }
+        byte[] encoded = new byte[data.length + 1];
+        encoded[0] = (byte) compression.ordinal();
+        System.arraycopy(data, 0, encoded, 1, data.length);
+        return encoded;
+    }
+
+    /**
+     * Decodes the value encoded by any codec
+     *
+     * @param encoded ordinal of the codec followed by the encoded value
+     * @return decoded value
+     */
+    @NotNull
+    public static String decode(@NotNull byte[] encoded) throws IOException {
+        Compression compression = Compression.values()[encoded[0]];
+        byte[] data = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 1, data, 0, data.length);
+        if (compression != Compression.NONE) {
+            long start = getCpuTime();
+            data = codecs.get(compression).decompress(data);
+            MetricsUtil.add("compression.decompress.nanos", getCpuTime() - start);
+        }
+        return new String(data, Charsets.UTF_8);
+    }
+
+    /**
+     * Encodes the value as text for CSV file
+     *
+     * @param value       to encode
+     * @param compression codec to compress the value with
+     * @return the value as is, if it is not compressed, or Base64 of encoded value after TEXT_PREFIX
+     */
+    @NotNull
+    public static String encodeText(@NotNull String value, @NotNull Compression compression) throws IOException {
+        if (value.length() < COMPRESSION_THRESHOLD && !value.startsWith(TEXT_PREFIX)) {
+            return value;
+        }
+        byte[] encoded = encode(value, compression);
+        if (encoded[0] == Compression.NONE.ordinal() && !value.startsWith(TEXT_PREFIX)) {
+            return value;
+        }
+        return TEXT_PREFIX + BaseEncoding.base64().encode(encoded);
+    }
+
+    /**
+     * Decodes the value from CSV file
+     *
+     * @param text encoded by encodeText
+     * @return decoded value
+     */
+    @NotNull
+    public static String decodeText(@NotNull String text) throws IOException {
+        if (!text.startsWith(TEXT_PREFIX)) {
+            return text;
+        }
+        return decode(BaseEncoding.base64().decode(text.substring(TEXT_PREFIX.length())));
+    }
+
+    private static long getCpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
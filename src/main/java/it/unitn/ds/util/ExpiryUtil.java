@@ -0,0 +1,83 @@
+package it.unitn.ds.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to replace expired items and replicas of the node with tombstones in the background
+ * <p>
+ * Every EXPIRY_INTERVAL the sweeper examines next EXPIRY_BATCH_SIZE items and replicas in the order of keys,
+ * so the node is locked for one batch at a time and the whole node is swept over several rounds
+ * <p>
+ * Tombstones keep the version of the expired item, so older versions are not resurrected by replication or recovery
+ *
+ * @see it.unitn.ds.entity.Item
+ * @see it.unitn.ds.rmi.NodeServer
+ */
+public abstract class ExpiryUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final long EXPIRY_INTERVAL = ServiceConfiguration.getExpiryInterval();
+
+    private static final int EXPIRY_BATCH_SIZE = ServiceConfiguration.getExpiryBatchSize();
+
+    @Nullable
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Item key to continue sweeping items from
+     */
+    private static int itemsCursor = 1;
+
+    /**
+     * Item key to continue sweeping replicas from
+     */
+    private static int replicasCursor = 1;
+
+    /**
+     * Starts sweeping expired items of the node periodically
+     *
+     * @param node current node
+     */
+    public static synchronized void start(@NotNull final Node node) {
+        stop();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("expiry-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NodeServer nodeServer = RemoteUtil.getRemoteNode(node, NodeServer.class);
+                    itemsCursor = nodeServer.expireItems(itemsCursor, EXPIRY_BATCH_SIZE);
+                    replicasCursor = nodeServer.expireReplicas(replicasCursor, EXPIRY_BATCH_SIZE);
+                } catch (Exception e) {
+                    logger.error("Failed to sweep expired items", e);
+                }
+            }
+        }, EXPIRY_INTERVAL, EXPIRY_INTERVAL, TimeUnit.MILLISECONDS);
+        logger.debug("Started expiry sweeper of nodeId=" + node.getId());
+    }
+
+    /**
+     * Stops sweeping expired items
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            logger.debug("Stopped expiry sweeper");
+        }
+        itemsCursor = 1;
+        replicasCursor = 1;
+    }
+}
@@ -0,0 +1,245 @@
+package it.unitn.ds.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unitn.ds.NodeState;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Member;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to maintain membership of the ring by gossiping
+ * <p>
+ * Every GOSSIP_INTERVAL the node increases it's own heartbeat and exchanges (push-pull) the whole membership list
+ * with GOSSIP_FANOUT random nodes, so the change of membership reaches every node in O(log n) rounds
+ * <p>
+ * Crashed nodes stop increasing heartbeats and get suspected by phi accrual failure detector,
+ * suspected nodes stay in the ring, but are skipped by routing until they gossip again
+ *
+ * @see it.unitn.ds.entity.Member
+ * @see it.unitn.ds.util.PhiAccrualFailureDetector
+ */
+public abstract class GossipUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final long GOSSIP_INTERVAL = ServiceConfiguration.getGossipInterval();
+
+    private static final int GOSSIP_FANOUT = ServiceConfiguration.getGossipFanout();
+
+    private static final double GOSSIP_PHI_THRESHOLD = ServiceConfiguration.getGossipPhiThreshold();
+
+    private static final long GOSSIP_CLEANUP = ServiceConfiguration.getGossipCleanup();
+
+    /**
+     * Map<NodeId, Member>
+     */
+    private static final Map<Integer, Member> members = new ConcurrentHashMap<>();
+
+    /**
+     * Map<NodeId, FailureDetector> of CONNECTED members, except for the current node
+     */
+    private static final Map<Integer, PhiAccrualFailureDetector> detectors = new ConcurrentHashMap<>();
+
+    /**
+     * Map<NodeId, Time> when DISCONNECTED member has been noticed, used to forget it after GOSSIP_CLEANUP
+     */
+    private static final Map<Integer, Long> disconnected = new ConcurrentHashMap<>();
+
+    /**
+     * Node ids of currently suspected members, used to log changes of suspicion
+     */
+    private static final Set<Integer> suspected = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    private static final Random random = new Random();
+
+    @Nullable
+    private static Node node;
+
+    @Nullable
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Starts gossiping membership of the node periodically
+     *
+     * @param node current node with initial view of the ring
+     */
+    public static synchronized void start(@NotNull Node node) {
+        stop();
+        GossipUtil.node = node;
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, String> entry : node.getNodes().entrySet()) {
+            if (entry.getKey() != node.getId()) {
+                members.put(entry.getKey(), new Member(entry.getKey(), entry.getValue(), 0, NodeState.CONNECTED));
+                detectors.put(entry.getKey(), newDetector(now));
+            }
+        }
+        members.put(node.getId(), new Member(node.getId(), node.getHost(), now, NodeState.CONNECTED));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("gossip-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    gossipRound();
+                } catch (Exception e) {
+                    logger.error("Failed to gossip", e);
+                }
+            }
+        }, GOSSIP_INTERVAL, GOSSIP_INTERVAL, TimeUnit.MILLISECONDS);
+        logger.debug("Started gossiping members=" + Arrays.toString(members.values().toArray()));
+    }
+
+    /**
+     * Stops gossiping and forgets the membership, as well as the history of heartbeats
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            logger.debug("Stopped gossiping");
+        }
+        node = null;
+        members.clear();
+        detectors.clear();
+        disconnected.clear();
+        suspected.clear();
+    }
+
+    /**
+     * Marks current node as DISCONNECTED, must be followed by gossip to let the ring know
+     */
+    public static void leave() {
+        Member self = members.get(node.getId());
+        members.put(self.getId(), self.next(NodeState.DISCONNECTED));
+    }
+
+    /**
+     * Exchanges membership with the node: pushes own view and merges the view of the node
+     *
+     * @param peer node to gossip with
+     */
+    public static void gossip(@NotNull Node peer) {
+        try {
+            merge(RemoteUtil.lookupRemoteNode(peer, NodeServer.class).gossip(getMembers()));
+            logger.trace("Gossiped with nodeId=" + peer.getId());
+        } catch (RemoteException e) {
+            logger.error("Failed to gossip with nodeId=" + peer.getId(), e);
+        }
+    }
+
+    /**
+     * Merges membership of the remote node into current view and the ring of the current node
+     *
+     * @param remoteMembers membership view of the remote node
+     * @return merged membership view of the current node
+     */
+    @NotNull
+    public static synchronized Map<Integer, Member> merge(@NotNull Map<Integer, Member> remoteMembers) {
+        if (node == null) {
+            return Collections.emptyMap();
+        }
+        long now = System.currentTimeMillis();
+        for (Member member : remoteMembers.values()) {
+            Member known = members.get(member.getId());
+            if (member.getId() == node.getId() || (known != null && known.getHeartbeat() >= member.getHeartbeat())) {
+                continue;
+            }
+            members.put(member.getId(), member);
+            if (member.getState() == NodeState.CONNECTED) {
+                disconnected.remove(member.getId());
+                PhiAccrualFailureDetector detector = detectors.get(member.getId());
+                if (detector == null) {
+                    detectors.put(member.getId(), newDetector(now));
+                } else {
+                    detector.heartbeat(now);
+                }
+                if (!node.getNodes().containsKey(member.getId())) {
+                    node.putNode(member.getId(), member.getHost());
+                    logger.info("Gossip: nodeId=" + member.getId() + " joined the ring");
+                }
+            } else {
+                detectors.remove(member.getId());
+                suspected.remove(member.getId());
+                disconnected.put(member.getId(), now);
+                if (node.getNodes().containsKey(member.getId())) {
+                    node.removeNode(member.getId());
+                    logger.info("Gossip: nodeId=" + member.getId() + " left the ring");
+                }
+            }
+        }
+        return getMembers();
+    }
+
+    /**
+     * Tells if the node is suspected to be crashed
+     *
+     * @param nodeId of the node
+     * @return true if phi of the node exceeds GOSSIP_PHI_THRESHOLD, false otherwise or if the node is unknown
+     */
+    public static boolean isSuspected(int nodeId) {
+        PhiAccrualFailureDetector detector = detectors.get(nodeId);
+        return detector != null && detector.phi(System.currentTimeMillis()) > GOSSIP_PHI_THRESHOLD;
+    }
+
+    /**
+     * Returns a copy of current membership view
+     *
+     * @return Map<NodeId, Member>
+     */
+    @NotNull
+    public static Map<Integer, Member> getMembers() {
+        return new HashMap<>(members);
+    }
+
+    /**
+     * Increases own heartbeat, gossips with random CONNECTED members, updates suspicion and forgets old DISCONNECTED members
+     */
+    private static void gossipRound() {
+        Member self = node == null ? null : members.get(node.getId());
+        if (self == null) {
+            return; // stopped
+        }
+        members.put(self.getId(), self.next(self.getState()));
+        List<Member> peers = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (member.getId() != self.getId() && member.getState() == NodeState.CONNECTED) {
+                peers.add(member);
+            }
+        }
+        Collections.shuffle(peers, random);
+        for (Member peer : peers.subList(0, Math.min(GOSSIP_FANOUT, peers.size()))) {
+            gossip(new Node(peer.getId(), peer.getHost()));
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, PhiAccrualFailureDetector> entry : detectors.entrySet()) {
+            double phi = entry.getValue().phi(now);
+            if (phi > GOSSIP_PHI_THRESHOLD && suspected.add(entry.getKey())) {
+                logger.warn("Gossip: nodeId=" + entry.getKey() + " is suspected, phi=" + phi);
+            } else if (phi <= GOSSIP_PHI_THRESHOLD && suspected.remove(entry.getKey())) {
+                logger.info("Gossip: nodeId=" + entry.getKey() + " is not suspected any more, phi=" + phi);
+            }
+        }
+        for (Map.Entry<Integer, Long> entry : disconnected.entrySet()) {
+            if (now - entry.getValue() > GOSSIP_CLEANUP) {
+                members.remove(entry.getKey());
+                disconnected.remove(entry.getKey());
+            }
+        }
+    }
+
+    @NotNull
+    private static PhiAccrualFailureDetector newDetector(long now) {
+        return new PhiAccrualFailureDetector(now, GOSSIP_INTERVAL, GOSSIP_INTERVAL / 2);
+    }
+}
@@ -0,0 +1,96 @@
+package it.unitn.ds.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Keyspace;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Convenient class to map variable length keys to item keys in the ring by Murmur3 hash
+ * <p>
+ * Item key of the raw key is between 1 and KEY_HASH_RANGE, so node ids are expected to be spread over the same range,
+ * integer item keys are used as is, so the integer API addresses the ring directly
+ * <p>
+ * Item keys of the keyspaces are skipped, so items of string and binary keys never follow settings and quotas
+ * of a keyspace, keyspaces are read once on start up, so raw keys are hashed to the same item keys until restart
+ * <p>
+ * Different raw keys may hash to the same item key, such collisions are detected by the coordinator
+ * comparing raw keys, not resolved. Integer keys share the range with hashed keys, so the coordinator also rejects
+ * updates by integer key of the items of raw keys
+ *
+ * @see it.unitn.ds.entity.Item#getRawKey()
+ * @see it.unitn.ds.rmi.NodeRemote
+ */
+public abstract class KeyUtil {
+
+    private static final int KEY_HASH_RANGE = ServiceConfiguration.getKeyHashRange();
+
+    /**
+     * Count of item keys from 1 to KEY_HASH_RANGE outside of the keyspaces
+     */
+    private static final int HASHED_KEYS = ServiceConfiguration.getHashedKeys();
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private static final BaseEncoding TEXT = BaseEncoding.base64Url();
+
+    /**
+     * Returns item key in the ring of the raw key
+     *
+     * @param rawKey bytes of the key
+     * @return positive item key not greater than KEY_HASH_RANGE outside of the keyspaces
+     */
+    public static int getItemKey(@NotNull byte[] rawKey) {
+        int hash = HASH.hashBytes(rawKey).asInt() & Integer.MAX_VALUE;
+        int itemKey = 1 + hash % HASHED_KEYS;
+        // keyspaces are sorted by start, so every keyspace starting at or before the key shifts it past the keyspace
+        for (Keyspace keyspace : ServiceConfiguration.getKeyspaces()) {
+            if (keyspace.getStart() > itemKey) {
+                break;
+            }
+            itemKey += keyspace.getSize();
+        }
+        return itemKey;
+    }
+
+    /**
+     * Returns bytes of the string key
+     */
+    @NotNull
+    public static byte[] toBytes(@NotNull String key) {
+        return key.getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * Returns readable form of the raw key, which is expected to be a string in most cases
+     */
+    @NotNull
+    public static String toString(@NotNull byte[] rawKey) {
+        return new String(rawKey, Charsets.UTF_8);
+    }
+
+    /**
+     * Encodes the raw key for CSV file, so it contains neither separators nor line ends
+     *
+     * @param rawKey bytes of the key
+     * @return URL safe Base64 of the key
+     */
+    @NotNull
+    public static String encodeText(@NotNull byte[] rawKey) {
+        return TEXT.encode(rawKey);
+    }
+
+    /**
+     * Decodes the raw key from CSV file
+     *
+     * @param text encoded by encodeText
+     * @return bytes of the key
+     */
+    @NotNull
+    public static byte[] decodeText(@NotNull String text) {
+        return TEXT.decode(text);
+    }
+}
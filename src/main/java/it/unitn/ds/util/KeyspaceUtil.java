@@ -0,0 +1,205 @@
+package it.unitn.ds.util;
+
+import com.google.common.util.concurrent.RateLimiter;
+import it.unitn.ds.Compression;
+import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Keyspace;
+import it.unitn.ds.rmi.OverloadedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Convenient class to resolve settings of the keyspace an item key belongs to
+ * <p>
+ * Keys outside of the keyspaces belong to the default keyspace, which follows the global configuration,
+ * so the ring without keyspaces behaves as before
+ * <p>
+ * Keyspace N does not exceed Replication N, so items of the keyspace are kept by the first N nodes
+ * of the same preference list and placement of the items does not depend on the keyspace
+ *
+ * @see it.unitn.ds.entity.Keyspace
+ * @see it.unitn.ds.ServiceConfiguration
+ */
+public abstract class KeyspaceUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Map<KeyspaceName, RateLimiter> of keyspaces with request quota
+     */
+    private static final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the keyspace by name
+     *
+     * @param name of the keyspace
+     * @return configured keyspace
+     * @throws IllegalArgumentException if there is no keyspace with the name
+     */
+    @NotNull
+    public static Keyspace get(@NotNull String name) {
+        for (Keyspace keyspace : ServiceConfiguration.getKeyspaces()) {
+            if (keyspace.getName().equals(name)) {
+                return keyspace;
+            }
+        }
+        throw new IllegalArgumentException("Unknown keyspace=" + name);
+    }
+
+    /**
+     * Returns the keyspace, which the item key belongs to
+     *
+     * @param itemKey of the item in the ring
+     * @return keyspace of the item, or null if the item belongs to the default keyspace
+     */
+    @Nullable
+    public static Keyspace forKey(int itemKey) {
+        List<Keyspace> keyspaces = ServiceConfiguration.getKeyspaces();
+        int low = 0;
+        int high = keyspaces.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Keyspace keyspace = keyspaces.get(middle);
+            if (itemKey < keyspace.getStart()) {
+                high = middle - 1;
+            } else if (itemKey > keyspace.getEnd()) {
+                low = middle + 1;
+            } else {
+                return keyspace;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count of nodes storing the item, including the responsible one
+     */
+    public static int getN(int itemKey) {
+        Keyspace keyspace = forKey(itemKey);
+        return keyspace == null ? Replication.getN() : keyspace.getN();
+    }
+
+    /**
+     * Smallest count of nodes storing items of the range, so the quorum of the scan over the range is valid
+     * for every keyspace it crosses
+     *
+     * @param fromKey first item key, inclusively
+     * @param toKey   last item key, inclusively
+     * @return minimum N of the keyspaces and of the default keyspace within the range
+     */
+    public static int getN(int fromKey, int toKey) {
+        int n = Integer.MAX_VALUE;
+        long key = fromKey;
+        for (Keyspace keyspace : ServiceConfiguration.getKeyspaces()) {
+            if (keyspace.getEnd() < fromKey) {
+                continue;
+            }
+            if (keyspace.getStart() > toKey) {
+                break;
+            }
+            if (keyspace.getStart() > key) {
+                n = Math.min(n, Replication.getN());
+            }
+            n = Math.min(n, keyspace.getN());
+            key = (long) keyspace.getEnd() + 1;
+        }
+        if (key <= toKey) {
+            n = Math.min(n, Replication.getN());
+        }
+        return n;
+    }
+
+    /**
+     * Returns last item key of the keyspace the item key belongs to, or the last key before the next keyspace
+     * if the item belongs to the default keyspace, so scans read every segment with the settings of one keyspace
+     *
+     * @param itemKey of the item
+     * @return last item key with the same settings as the item key, inclusively
+     */
+    public static int getEnd(int itemKey) {
+        for (Keyspace keyspace : ServiceConfiguration.getKeyspaces()) {
+            if (keyspace.getStart() > itemKey) {
+                return keyspace.getStart() - 1;
+            }
+            if (keyspace.getEnd() >= itemKey) {
+                return keyspace.getEnd();
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Read quorum of the item
+     */
+    public static int getR(int itemKey) {
+        Keyspace keyspace = forKey(itemKey);
+        return keyspace == null ? Replication.getR() : keyspace.getR();
+    }
+
+    /**
+     * Write quorum of the item
+     */
+    public static int getW(int itemKey) {
+        Keyspace keyspace = forKey(itemKey);
+        return keyspace == null ? Replication.getW() : keyspace.getW();
+    }
+
+    /**
+     * Tells if the coordinator caches the item
+     */
+    public static boolean isReadCached(int itemKey) {
+        Keyspace keyspace = forKey(itemKey);
+        return keyspace == null || keyspace.isReadCache();
+    }
+
+    /**
+     * Codec of values of the item in the storage and in transfers between the nodes
+     */
+    @NotNull
+    public static Compression getCompression(int itemKey) {
+        Keyspace keyspace = forKey(itemKey);
+        return keyspace == null ? ServiceConfiguration.getCompression() : keyspace.getCompression();
+    }
+
+    /**
+     * Admits the client request to the item under the quotas of it's keyspace
+     *
+     * @param itemKey of the item
+     * @param value   new value of the item, or null if the request does not write a value
+     * @throws OverloadedException if the keyspace has used up it's requests per second on the coordinator
+     * @throws RemoteException     if the value is longer than allowed in the keyspace
+     */
+    public static void checkQuota(int itemKey, @Nullable String value) throws RemoteException {
+        Keyspace keyspace = forKey(itemKey);
+        if (keyspace == null) {
+            return;
+        }
+        if (value != null && keyspace.getMaxValueLength() > 0 && value.length() > keyspace.getMaxValueLength()) {
+            MetricsUtil.increment("keyspace." + keyspace.getName() + ".rejected");
+            throw new RemoteException("Value of length=" + value.length() + " exceeds quota of keyspace=" + keyspace.getName() + ", maxValueLength=" + keyspace.getMaxValueLength());
+        }
+        if (keyspace.getMaxRequestsPerSecond() > 0 && !getRateLimiter(keyspace).tryAcquire()) {
+            MetricsUtil.increment("keyspace." + keyspace.getName() + ".rejected");
+            logger.debug("Rejected request to itemKey=" + itemKey + " over quota of keyspace=" + keyspace.getName());
+            throw new OverloadedException(keyspace.getName(), keyspace.getMaxRequestsPerSecond());
+        }
+    }
+
+    @NotNull
+    private static RateLimiter getRateLimiter(@NotNull Keyspace keyspace) {
+        RateLimiter rateLimiter = rateLimiters.get(keyspace.getName());
+        if (rateLimiter == null) {
+            rateLimiters.putIfAbsent(keyspace.getName(), RateLimiter.create(keyspace.getMaxRequestsPerSecond()));
+            rateLimiter = rateLimiters.get(keyspace.getName());
+        }
+        return rateLimiter;
+    }
+}
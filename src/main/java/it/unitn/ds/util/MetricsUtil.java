@@ -0,0 +1,100 @@
+package it.unitn.ds.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Convenient class to collect metrics of the node
+ * <p>
+ * Counters are increased by the code as events happen, gauges are sampled when metrics are requested
+ *
+ * @see it.unitn.ds.rmi.NodeClient
+ */
+public abstract class MetricsUtil {
+
+    /**
+     * Value of the metric sampled on request
+     */
+    public interface Gauge {
+
+        @NotNull
+        Number getValue();
+    }
+
+    /**
+     * Map<MetricName, Counter>
+     */
+    private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Map<MetricName, Gauge>
+     */
+    private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Increases the counter by 1
+     *
+     * @param name of the counter
+     */
+    public static void increment(@NotNull String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Increases the counter by delta
+     *
+     * @param name  of the counter
+     * @param delta to add
+     */
+    public static void add(@NotNull String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counters.putIfAbsent(name, new AtomicLong());
+            counter = counters.get(name);
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * Returns current value of the counter
+     *
+     * @param name of the counter
+     * @return value of the counter, 0 if it has not been increased yet
+     */
+    public static long getCount(@NotNull String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Registers the gauge, replacing the previous one with the same name
+     *
+     * @param name  of the gauge
+     * @param gauge to sample
+     */
+    public static void register(@NotNull String name, @NotNull Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Returns current values of all counters and gauges
+     *
+     * @return Map<MetricName, Value> sorted by name
+     */
+    @NotNull
+    public static Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().getValue());
+        }
+        return metrics;
+    }
+}
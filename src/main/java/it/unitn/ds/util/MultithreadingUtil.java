@@ -1,138 +1,517 @@
 package it.unitn.ds.util;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unitn.ds.ExecutorMode;
 import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
 import it.unitn.ds.entity.Item;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.ReplicationTimeout;
+import it.unitn.ds.entity.TokenRange;
+import it.unitn.ds.rmi.KeyCollisionException;
 import it.unitn.ds.rmi.NodeServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.rmi.RemoteException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Convenient class to work with multithreading form replicas requests
+ * <p>
+ * Client requests fan out to the replicas on one shared bounded coordinator pool and are composed as futures,
+ * so the count of threads does not grow with the count of concurrent requests
  *
  * @see it.unitn.ds.Replication
  * @see java.util.concurrent.ExecutorService
- * @see java.util.concurrent.CompletionService
+ * @see com.google.common.util.concurrent.ListenableFuture
  */
 public abstract class MultithreadingUtil {
 
     private static final Logger logger = LogManager.getLogger();
 
+    private static final int MEMBERSHIP_PARALLELISM = ServiceConfiguration.getMembershipParallelism();
+
+    private static final ExecutorMode EXECUTOR_MODE = ServiceConfiguration.getExecutorMode();
+
+    /**
+     * Bounded pool shared by membership changes (join, leave, recover) to fan out requests to other nodes
+     */
+    private static final ExecutorService membershipExecutorService = Executors.newFixedThreadPool(MEMBERSHIP_PARALLELISM,
+            new ThreadFactoryBuilder().setNameFormat("membership-%d").setDaemon(true).build());
+
+    /**
+     * Pool shared by all client requests coordinated by the node to fan out requests to the replicas,
+     * resized at runtime when coordinator parallelism is changed
+     */
+    private static final ExecutorService coordinatorExecutor = newExecutorService("coordinator-%d", ServiceConfiguration.getCoordinatorParallelism());
+
+    private static final ListeningExecutorService coordinatorExecutorService = MoreExecutors.listeningDecorator(coordinatorExecutor);
+
+    /**
+     * Completes quorum requests, which did not reach the quorum by the deadline of their client operation
+     */
+    private static final ScheduledExecutorService timeoutExecutorService = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("quorum-timeout-%d").setDaemon(true).build());
+
+    static {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        MetricsUtil.register("threads.live", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return threadMXBean.getThreadCount();
+            }
+        });
+        MetricsUtil.register("threads.peak", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return threadMXBean.getPeakThreadCount();
+            }
+        });
+        // effective mode of the coordinator pool, VIRTUAL falls back to platform threads on older JDKs
+        MetricsUtil.register("executor.virtual", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return coordinatorExecutor instanceof ThreadPoolExecutor ? 0 : 1;
+            }
+        });
+    }
+
     /**
-     * Asynchronous update of the replicas (excluding item on original node) served by Replication.N - 1 threads
+     * Creates executor service according to ExecutorMode
+     * <p>
+     * Virtual thread executor is created by reflection, so the code still compiles and runs on JDK 7
      *
-     * @param item        to update
-     * @param nodeForItem original node of the item
-     * @param nodes       set of nodes
-     * @see it.unitn.ds.Replication
+     * @param nameFormat  of platform threads
+     * @param parallelism count of platform threads, ignored for virtual threads
+     * @return bounded pool of platform threads, or executor starting new virtual thread per task
+     * @see it.unitn.ds.ExecutorMode
+     */
+    @NotNull
+    public static ExecutorService newExecutorService(@NotNull String nameFormat, int parallelism) {
+        if (EXECUTOR_MODE == ExecutorMode.VIRTUAL) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                logger.warn("Virtual threads are not supported by JDK " + System.getProperty("java.version") + ", falling back to platform threads");
+            }
+        }
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * Resizes the coordinator pool to the configured coordinator parallelism, after the configuration has been changed
+     * <p>
+     * Pool of virtual threads is unbounded and is left as is
+     *
+     * @see it.unitn.ds.ServiceConfiguration#apply(java.util.Map)
+     */
+    public static void reconfigure() {
+        resize(coordinatorExecutor, ServiceConfiguration.getCoordinatorParallelism());
+    }
+
+    /**
+     * Resizes the pool of platform threads created by newExecutorService, pool of virtual threads is left as is
+     *
+     * @param executorService created by newExecutorService
+     * @param parallelism     new count of platform threads
+     */
+    public static void resize(@NotNull ExecutorService executorService, int parallelism) {
+        if (!(executorService instanceof ThreadPoolExecutor)) {
+            return;
+        }
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+        synchronized (executor) {
+            if (parallelism == executor.getCorePoolSize()) {
+                return;
+            }
+            // core size must never exceed max size in between
+            if (parallelism > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(parallelism);
+                executor.setCorePoolSize(parallelism);
+            } else {
+                executor.setCorePoolSize(parallelism);
+                executor.setMaximumPoolSize(parallelism);
+            }
+        }
+        logger.debug("Resized pool to parallelism=" + parallelism);
+    }
+
+    /**
+     * Executes tasks concurrently, at most MEMBERSHIP_PARALLELISM at a time, and waits for all of them to finish
+     * <p>
+     * Failed tasks are logged and skipped in the results
+     *
+     * @param tasks to execute, must not execute other tasks themselves
+     * @return results of successful tasks in the order of tasks
+     */
+    @NotNull
+    public static <T> List<T> executeAll(@NotNull Collection<? extends Callable<T>> tasks) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : membershipExecutorService.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    logger.error("Failed to execute the task", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while executing tasks", e);
+        }
+        return results;
+    }
+
+    /**
+     * Concurrently sends one batch of replicas to every node
+     *
+     * @param replicasByNodeId Map<NodeId, Replicas> to update
+     * @param nodes            set of nodes
      */
-    public static void updateReplicas(@NotNull final Item item, @NotNull final Node nodeForItem, @NotNull final Map<Integer, String> nodes) {
-        ExecutorService executorService = Executors.newFixedThreadPool(Replication.N - 1);
-        for (int i = 1; i < Replication.N; i++) {
-            final int finalI = i;
-            executorService.execute(new Runnable() {
+    public static void updateReplicas(@NotNull Map<Integer, List<Item>> replicasByNodeId, @NotNull final Map<Integer, String> nodes) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final Map.Entry<Integer, List<Item>> entry : replicasByNodeId.entrySet()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    RemoteUtil.getRemoteNode(new Node(entry.getKey(), nodes.get(entry.getKey())), NodeServer.class).updateReplicas(entry.getValue());
+                    logger.debug("Updated replicas=" + Arrays.toString(entry.getValue().toArray()) + " to nodeId=" + entry.getKey());
+                    return null;
+                }
+            });
+        }
+        executeAll(tasks);
+    }
+
+    /**
+     * Requests to the nodes, which are sent one by one until quorum nodes have replied with non-null results
+     */
+    private static final class QuorumRequest<T> {
+
+        /**
+         * Map<NodeId, Task>
+         */
+        private final Map<Integer, ? extends Callable<T>> tasks;
+
+        private final int quorum;
+
+        /**
+         * Nodes not requested yet in the order of preference
+         */
+        private final Deque<Integer> nodeIds;
+
+        private final SettableFuture<List<T>> future = SettableFuture.create();
+
+        private final List<T> results = new ArrayList<>();
+
+        /**
+         * System.nanoTime() by which the future completes
+         */
+        private final long deadline;
+
+        private int pending;
+
+        private QuorumRequest(@NotNull Map<Integer, ? extends Callable<T>> tasks, int quorum, @NotNull Set<Integer> localNodeIds, long deadline) {
+            this.tasks = tasks;
+            this.quorum = quorum;
+            this.deadline = deadline;
+            this.nodeIds = new ArrayDeque<>(CircuitBreakerUtil.prefer(tasks.keySet(), localNodeIds));
+        }
+
+        private void start() {
+            if (tasks.isEmpty()) {
+                future.set(results);
+                return;
+            }
+            for (int i = 0; i < quorum; i++) {
+                next();
+            }
+            scheduleTimeout(future, results, quorum, deadline);
+        }
+
+        /**
+         * Sends the request to the next preferred node, or completes the future if all nodes have replied,
+         * no more requests are sent once the future is completed, as nobody reads their results
+         */
+        private void next() {
+            Integer nodeId;
+            synchronized (results) {
+                if (future.isDone()) {
+                    return;
+                }
+                nodeId = nodeIds.pollFirst();
+                if (nodeId == null) {
+                    if (pending == 0) {
+                        complete(future, results);
+                    }
+                    return;
+                }
+                pending++;
+            }
+            send(nodeId);
+        }
+
+        private void send(final int nodeId) {
+            if (!CircuitBreakerUtil.allowRequest(nodeId)) {
+                logger.debug("Skipped request to nodeId=" + nodeId + " with open circuit");
+                reply(null);
+                return;
+            }
+            final AtomicBoolean replied = new AtomicBoolean();
+            final long start = System.nanoTime();
+            final long timeout = CircuitBreakerUtil.getTimeout(nodeId);
+            final ScheduledFuture<?> timeoutFuture = timeoutExecutorService.schedule(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        Node nthSuccessor = RemoteUtil.getNthSuccessor(nodeForItem, nodes, finalI);
-                        if (nthSuccessor.getId() != nodeForItem.getId()) {
-                            RemoteUtil.getRemoteNode(nthSuccessor, NodeServer.class).updateReplicas(Arrays.asList(item));
-                            logger.debug("Replicated item=" + item + " to nthSuccessor=" + nthSuccessor);
-                        }
-                    } catch (RemoteException e) {
-                        logger.error("Failed to get node via RMI", e);
+                    if (replied.compareAndSet(false, true)) {
+                        MetricsUtil.increment("replica.timeouts");
+                        CircuitBreakerUtil.failure(nodeId);
+                        logger.debug("Request to nodeId=" + nodeId + " timed out after " + timeout + "ms");
+                        reply(null);
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            Futures.addCallback(coordinatorExecutorService.submit(tasks.get(nodeId)), new FutureCallback<T>() {
+                @Override
+                public void onSuccess(@Nullable T result) {
+                    timeoutFuture.cancel(false);
+                    CircuitBreakerUtil.success(nodeId, System.nanoTime() - start);
+                    if (replied.compareAndSet(false, true)) {
+                        reply(result);
+                    }
+                }
+
+                @Override
+                public void onFailure(@NotNull Throwable t) {
+                    timeoutFuture.cancel(false);
+                    CircuitBreakerUtil.failure(nodeId);
+                    logger.debug("Failed request to nodeId=" + nodeId, t);
+                    if (replied.compareAndSet(false, true)) {
+                        reply(null);
                     }
                 }
             });
         }
+
+        /**
+         * Counts the reply of the node, null replies are replaced with the request to the next node
+         */
+        private void reply(@Nullable T result) {
+            boolean isDone;
+            synchronized (results) {
+                pending--;
+                if (result != null) {
+                    results.add(result);
+                    if (results.size() >= quorum) {
+                        future.set(new ArrayList<>(results));
+                    }
+                }
+                isDone = pending == 0 && nodeIds.isEmpty();
+            }
+            if (result == null) {
+                next();
+            } else if (isDone) {
+                complete(future, results);
+            }
+        }
     }
 
     /**
-     * Synchronous request for replicas (excluding item on the original node) served by Replication.N - 1 threads
+     * Sends requests to the nodes on the shared coordinator pool and returns the future of their results
+     * <p>
+     * Requests are sent to quorum nodes in the order of preference of CircuitBreakerUtil, every request, which fails,
+     * returns null or does not reply within the timeout of the node, is replaced with the request to the next node,
+     * so the quorum is served by healthy fast replicas and slow replicas are not waited for,
+     * healthy nodes of the same zone are preferred to the nodes of other zones
      * <p>
-     * Uses non-waiting CompletionService interface, which returns Future object from Callback as soon as it has been processed
+     * The future completes as soon as quorum requests have returned non-null results, all nodes have replied
+     * or the deadline has passed, whichever comes first, so waiting for the future never takes longer than the deadline
      *
-     * @param itemKey               of the item
-     * @param nodeForItem           original node of the item
-     * @param isOriginalOperational true if original node has non-null item, false otherwise
-     * @param nodes                 set of nodes
-     * @return collection of replicas
-     * @see it.unitn.ds.Replication
+     * @param tasks        Map<NodeId, Task> of requests to the nodes, must not wait for other tasks in the coordinator pool
+     * @param quorum       count of non-null results sufficient for the request
+     * @param localNodeIds nodes of the same zone as the coordinator
+     * @param deadline     System.nanoTime() by which the future completes, shared by all phases of the client operation
+     * @return future of non-null results in the order of completion
+     * @see #getDeadline()
+     * @see it.unitn.ds.util.CircuitBreakerUtil
+     * @see it.unitn.ds.util.RemoteUtil#getLocalNodeIds(java.util.Collection, java.util.Map)
      */
     @NotNull
-    public static List<Item> getReplicas(int itemKey, @NotNull Node nodeForItem, boolean isOriginalOperational, Map<Integer, String> nodes) {
-        ExecutorService executorService = Executors.newFixedThreadPool(Replication.N - 1);
-        CompletionService<Item> completionService = new ExecutorCompletionService<>(executorService);
-        for (Callable<Item> callable : getReadCallables(itemKey, nodeForItem, nodes)) {
-            completionService.submit(callable);
-        }
-        executorService.shutdown();
-        return getReplicasFast(isOriginalOperational ? Replication.R - 1 : Replication.R, executorService, completionService);
+    public static <T> ListenableFuture<List<T>> quorum(@NotNull Map<Integer, ? extends Callable<T>> tasks, int quorum, @NotNull Set<Integer> localNodeIds, long deadline) {
+        QuorumRequest<T> request = new QuorumRequest<>(tasks, quorum, localNodeIds, deadline);
+        request.start();
+        return request.future;
     }
 
     /**
-     * Returns a set of Callable objects with replica request
+     * Returns the future of results of already running requests, completed the same way as quorum of tasks
      *
-     * @param itemKey     of the item
-     * @param nodeForItem original node of the item
-     * @param nodes       set of nodes
-     * @return set of Callable objects with replica request
+     * @param futures  of the requests
+     * @param quorum   count of non-null results sufficient for the request
+     * @param deadline System.nanoTime() by which the future completes
+     * @return future of non-null results in the order of completion
+     * @see #quorum(java.util.Map, int, java.util.Set, long)
      */
     @NotNull
-    private static Set<Callable<Item>> getReadCallables(final int itemKey, @NotNull final Node nodeForItem, final Map<Integer, String> nodes) {
-        Set<Callable<Item>> callable = new HashSet<>();
-        for (int i = 1; i < Replication.N; i++) {
-            final int finalI = i;
-            callable.add(new Callable<Item>() {
+    public static <T> ListenableFuture<List<T>> quorumOf(@NotNull Collection<ListenableFuture<T>> futures, final int quorum, long deadline) {
+        final SettableFuture<List<T>> future = SettableFuture.create();
+        final List<T> results = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger(futures.size());
+        if (futures.isEmpty()) {
+            future.set(results);
+            return future;
+        }
+        for (ListenableFuture<T> request : futures) {
+            Futures.addCallback(request, new FutureCallback<T>() {
+                @Override
+                public void onSuccess(@Nullable T result) {
+                    if (result != null) {
+                        synchronized (results) {
+                            results.add(result);
+                            if (results.size() >= quorum) {
+                                future.set(new ArrayList<>(results));
+                            }
+                        }
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        complete(future, results);
+                    }
+                }
+
                 @Override
-                public Item call() throws Exception {
-                    Node nthSuccessor = RemoteUtil.getNthSuccessor(nodeForItem, nodes, finalI);
-                    Item replica = nthSuccessor.getReplicas().get(itemKey);
-                    logger.debug("Got replica=" + replica + " from nthSuccessor=" + nthSuccessor);
-                    return replica;
+                public void onFailure(@NotNull Throwable t) {
+                    logger.error("Failed to execute the quorum task", t);
+                    if (pending.decrementAndGet() == 0) {
+                        complete(future, results);
+                    }
                 }
             });
         }
-        return callable;
+        scheduleTimeout(future, results, quorum, deadline);
+        return future;
     }
 
     /**
-     * Executes the set of Callable replica requests concurrently and returns a collection of replicas within TIMEOUT in SECONDS
+     * Returns the deadline of the client operation starting now, to be shared by all of its quorum requests,
+     * so the operation as a whole never takes longer than Replication timeout
      *
-     * @param countReplicas     minimal number of replicas, sufficient for request,
-     *                          method will return collection of items as soon as
-     *                          this amount of items has been received from replicas
-     * @param executorService   of thread executor
-     * @param completionService of non-waiting thread executor
-     * @return collection of replicas within TIMEOUT in SECONDS
+     * @return System.nanoTime() in Replication timeout
      * @see it.unitn.ds.Replication
      */
-    @NotNull
-    private static List<Item> getReplicasFast(int countReplicas, @NotNull ExecutorService executorService, @NotNull CompletionService<Item> completionService) {
-        List<Item> replicas = new LinkedList<>();
-        while (!executorService.isTerminated()) {
-            try {
-                Future<Item> future = completionService.poll(Replication.TIMEOUT.getValue(), Replication.TIMEOUT.getUnit());
-                if (future == null) {
-                    break; // timeout
+    public static long getDeadline() {
+        ReplicationTimeout timeout = Replication.getTimeout();
+        return System.nanoTime() + timeout.getUnit().toNanos(timeout.getValue());
+    }
+
+    /**
+     * Completes the future with the results collected so far, if the quorum has not been reached by the deadline
+     */
+    private static <T> void scheduleTimeout(@NotNull final SettableFuture<List<T>> future, @NotNull final List<T> results, final int quorum, long deadline) {
+        final ScheduledFuture<?> timeout = timeoutExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (complete(future, results)) {
+                    logger.debug("Quorum timed out with " + results.size() + " results out of " + quorum);
                 }
-                Item replica = future.get(Replication.TIMEOUT.getValue(), Replication.TIMEOUT.getUnit());
-                if (replica != null) {
-                    replicas.add(replica);
-                    if (replicas.size() == countReplicas) {
-                        break; // enough replicas responded
+            }
+        }, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                timeout.cancel(false);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Waits for the future, which is expected to complete within Replication timeout
+     *
+     * @param future of the quorum request
+     * @return result of the future
+     * @throws KeyCollisionException if the update has been rejected for the raw key colliding with another one
+     * @throws RemoteException       if the future failed or waiting has been interrupted
+     */
+    @Nullable
+    public static <T> T await(@NotNull ListenableFuture<T> future) throws RemoteException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for quorum", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KeyCollisionException) {
+                throw (KeyCollisionException) e.getCause();
+            }
+            throw new RemoteException("Failed to agree on quorum", e.getCause());
+        }
+    }
+
+    /**
+     * Synchronous request for the first items of the token range from the original node and it's replicas
+     * <p>
+     * Returns as soon as quorum nodes replied, the first limit items of merged replies are complete,
+     * since every node replies with it's own first limit items
+     *
+     * @param range  token range of item keys owned by the original node
+     * @param nodeId original node of the range
+     * @param limit  maximum count of items to request from every node
+     * @param quorum count of nodes to read from
+     * @param n      count of nodes storing items of the range, nodes further in the preference list reply
+     *               with empty ranges and must not count towards the quorum
+     * @param nodes  set of nodes
+     * @return Map<ItemKey, Item> of latest items, or null if less than quorum nodes replied within TIMEOUT
+     * @see it.unitn.ds.util.KeyspaceUtil#getN(int)
+     */
+    @Nullable
+    public static NavigableMap<Integer, Item> getItemRange(@NotNull final TokenRange range, final int nodeId, final int limit, int quorum, int n, @NotNull final Map<Integer, String> nodes) throws RemoteException {
+        List<Integer> nodeIds = RemoteUtil.getPreferenceList(nodeId, nodes, n);
+        Map<Integer, Callable<List<Item>>> tasks = new LinkedHashMap<>();
+        for (final int replicaNodeId : nodeIds) {
+            tasks.put(replicaNodeId, new Callable<List<Item>>() {
+                @Override
+                public List<Item> call() throws Exception {
+                    if (GossipUtil.isSuspected(replicaNodeId)) {
+                        return null;
                     }
+                    NodeServer remoteNode = RemoteUtil.getRemoteNode(new Node(replicaNodeId, nodes.get(replicaNodeId)), NodeServer.class);
+                    return replicaNodeId == nodeId ? remoteNode.getItemRange(range, limit) : remoteNode.getReplicaRange(range, limit);
                 }
-            } catch (Exception e) {
-                logger.error("Failed to execute the thread", e);
+            });
+        }
+        List<List<Item>> replies = await(quorum(tasks, quorum, RemoteUtil.getLocalNodeIds(nodeIds, nodes), getDeadline()));
+        if (replies.size() < quorum) {
+            logger.debug("No can agree on READ quorum for range=" + range + " as Q=" + replies.size() + ", quorum=" + quorum);
+            return null;
+        }
+        NavigableMap<Integer, Item> items = new TreeMap<>();
+        for (List<Item> reply : replies) {
+            for (Item item : reply) {
+                items.put(item.getKey(), VersionUtil.resolve(items.get(item.getKey()), item));
             }
         }
-        executorService.shutdownNow();
-        return replicas;
+        return items;
+    }
+
+    private static <T> boolean complete(@NotNull SettableFuture<List<T>> future, @NotNull List<T> results) {
+        synchronized (results) {
+            return future.set(new ArrayList<>(results));
+        }
     }
 }
@@ -0,0 +1,80 @@
+package it.unitn.ds.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Phi accrual failure detector of a single remote node
+ * <p>
+ * Instead of boolean alive/dead answer returns suspicion level phi, which grows the longer heartbeat is overdue
+ * comparing to the history of heartbeat inter-arrival times (assuming normal distribution)
+ * <p>
+ * Phi = 1 means ~10% chance of mistake, phi = 2 means ~1%, phi = 3 means ~0.1% and so on
+ *
+ * @see it.unitn.ds.util.GossipUtil
+ */
+public final class PhiAccrualFailureDetector {
+
+    private static final int MAX_SAMPLES = 100;
+
+    private final Deque<Long> intervals = new ArrayDeque<>();
+
+    private final long minStdDeviation;
+
+    private long lastHeartbeat;
+
+    private long sum;
+
+    private long squaredSum;
+
+    /**
+     * @param firstHeartbeat   time of the first heartbeat in milliseconds
+     * @param expectedInterval expected time between heartbeats in milliseconds, bootstraps the history
+     * @param minStdDeviation  lower bound of standard deviation in milliseconds, avoids suspicion on regular heartbeats
+     */
+    public PhiAccrualFailureDetector(long firstHeartbeat, long expectedInterval, long minStdDeviation) {
+        this.lastHeartbeat = firstHeartbeat;
+        this.minStdDeviation = minStdDeviation;
+        addInterval(expectedInterval);
+    }
+
+    /**
+     * Records arrival of the new heartbeat
+     *
+     * @param now current time in milliseconds
+     */
+    public synchronized void heartbeat(long now) {
+        addInterval(now - lastHeartbeat);
+        lastHeartbeat = now;
+    }
+
+    /**
+     * Returns suspicion level of the node failure
+     *
+     * @param now current time in milliseconds
+     * @return phi value, 0 if heartbeat is not overdue
+     */
+    public synchronized double phi(long now) {
+        double mean = (double) sum / intervals.size();
+        double variance = (double) squaredSum / intervals.size() - mean * mean;
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDeviation);
+        double y = (now - lastHeartbeat - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (now - lastHeartbeat > mean) {
+            return -Math.log10(e / (1.0 + e));
+        } else {
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+
+    private void addInterval(long interval) {
+        if (intervals.size() == MAX_SAMPLES) {
+            long removed = intervals.removeFirst();
+            sum -= removed;
+            squaredSum -= removed * removed;
+        }
+        intervals.addLast(interval);
+        sum += interval;
+        squaredSum += interval * interval;
+    }
+}
@@ -0,0 +1,173 @@
+package it.unitn.ds.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Item;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to cache items read by the coordinator, so hot items are served without quorum requests
+ * <p>
+ * Cache is bounded by approximate size of items in bytes, least recently used items are evicted first
+ * <p>
+ * Items updated through the current coordinator are refreshed by version, updates through other coordinators
+ * become visible after READ_CACHE_TTL at most, so enabling the cache trades read-your-writes guarantee
+ * of [ W + R > N ] across coordinators for latency of hot items. Cache is disabled by default
+ *
+ * @see it.unitn.ds.rmi.NodeRemote
+ * @see it.unitn.ds.util.MetricsUtil
+ */
+public abstract class ReadCacheUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static long maxBytes = ServiceConfiguration.getReadCacheMaxBytes();
+
+    private static long ttl = ServiceConfiguration.getReadCacheTtl();
+
+    /**
+     * Map<ItemKey, Item>, replaced when the size or TTL of the cache is changed at runtime
+     */
+    private static volatile Cache<Integer, Item> cache = createCache(maxBytes, ttl);
+
+    static {
+        MetricsUtil.register("cache.read.hits", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return cache.stats().hitCount();
+            }
+        });
+        MetricsUtil.register("cache.read.misses", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return cache.stats().missCount();
+            }
+        });
+        MetricsUtil.register("cache.read.hitRatio", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return cache.stats().hitRate();
+            }
+        });
+        MetricsUtil.register("cache.read.evictions", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return cache.stats().evictionCount();
+            }
+        });
+        MetricsUtil.register("cache.read.size", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return cache.size();
+            }
+        });
+    }
+
+    /**
+     * Returns cached item
+     *
+     * @param key of the item
+     * @return cached item, or null if cache is disabled, item is not cached or expired
+     */
+    @Nullable
+    public static Item get(int key) {
+        if (!isEnabled() || !KeyspaceUtil.isReadCached(key)) {
+            return null;
+        }
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Caches the item resolved with the cached version, unless the keyspace of the item is not cached
+     * <p>
+     * Cached version is replaced by compare and set, so concurrent puts never replace newer version with older one
+     *
+     * @param item read or updated by the coordinator
+     * @see it.unitn.ds.util.VersionUtil
+     */
+    public static void put(@NotNull Item item) {
+        if (!isEnabled() || !KeyspaceUtil.isReadCached(item.getKey())) {
+            return;
+        }
+        ConcurrentMap<Integer, Item> items = cache.asMap();
+        while (true) {
+            Item cached = items.get(item.getKey());
+            if (cached == null) {
+                if (items.putIfAbsent(item.getKey(), item) == null) {
+                    break;
+                }
+                continue;
+            }
+            Item resolved = VersionUtil.resolve(cached, item);
+            if (resolved == cached || items.replace(item.getKey(), cached, resolved)) {
+                break;
+            }
+        }
+        logger.trace("Cached item=" + item);
+    }
+
+    /**
+     * Removes the item from cache, so next read goes to the replicas
+     *
+     * @param key of the item
+     */
+    public static void invalidate(int key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Removes all items from cache
+     */
+    public static void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Replaces the cache with an empty one if the size or TTL of the cache has been changed in the configuration
+     *
+     * @see it.unitn.ds.ServiceConfiguration#apply(java.util.Map)
+     */
+    public static synchronized void reconfigure() {
+        long newMaxBytes = ServiceConfiguration.getReadCacheMaxBytes();
+        long newTtl = ServiceConfiguration.getReadCacheTtl();
+        if (newMaxBytes == maxBytes && newTtl == ttl) {
+            return;
+        }
+        maxBytes = newMaxBytes;
+        ttl = newTtl;
+        cache = createCache(maxBytes, ttl);
+        logger.debug("Replaced read cache with maxBytes=" + maxBytes + " ttl=" + ttl + "ms");
+    }
+
+    private static boolean isEnabled() {
+        return ServiceConfiguration.getReadCacheMaxBytes() > 0;
+    }
+
+    @NotNull
+    private static Cache<Integer, Item> createCache(long maxBytes, long ttl) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<Integer, Item>() {
+                    @Override
+                    public int weigh(@NotNull Integer key, @NotNull Item item) {
+                        return item.getSizeInBytes();
+                    }
+                })
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+}
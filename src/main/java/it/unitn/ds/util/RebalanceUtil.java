@@ -0,0 +1,342 @@
+package it.unitn.ds.util;
+
+import com.google.common.base.MoreObjects;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.rmi.NodeClient;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class for the client to even out the load of the nodes by moving the nodes along the ring
+ * <p>
+ * Load share of the node is the average of it's shares of items, bytes and requests per second of it's items,
+ * request rates are measured between two samples of the counters REBALANCE_SAMPLE_INTERVAL apart.
+ * The load of the node is spread over SAMPLE_SIZE keys sampled evenly from it's items, new node ids are chosen
+ * on the sampled keys, so every node gets an equal share of the load, nodes keep their order in the ring
+ * <p>
+ * Nodes are moved one at a time: the node leaves passing it's items to the successor and joins back with the new id,
+ * REBALANCE_MOVE_INTERVAL is waited between the moves, so the ring serves requests during rebalancing.
+ * Nothing is moved if the shares of all nodes are within REBALANCE_TOLERANCE of the even share
+ *
+ * @see it.unitn.ds.ServerLauncher#move(int)
+ * @see it.unitn.ds.rmi.NodeServer#sampleItemKeys(int)
+ */
+public abstract class RebalanceUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final long REBALANCE_SAMPLE_INTERVAL = ServiceConfiguration.getRebalanceSampleInterval();
+
+    private static final long REBALANCE_MOVE_INTERVAL = ServiceConfiguration.getRebalanceMoveInterval();
+
+    private static final double REBALANCE_TOLERANCE = ServiceConfiguration.getRebalanceTolerance();
+
+    private static final int SAMPLE_SIZE = 128;
+
+    private static final String REQUESTS_METRIC = "items.requests";
+
+    /**
+     * Planned move of the node to the new id
+     */
+    public static final class Move {
+
+        private final int nodeId;
+
+        private final int newNodeId;
+
+        private final double share;
+
+        private Move(int nodeId, int newNodeId, double share) {
+            this.nodeId = nodeId;
+            this.newNodeId = newNodeId;
+            this.share = share;
+        }
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public int getNewNodeId() {
+            return newNodeId;
+        }
+
+        /**
+         * Returns measured load share of the node before the move
+         */
+        public double getShare() {
+            return share;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("nodeId", nodeId)
+                    .add("newNodeId", newNodeId)
+                    .add("share", String.format("%.3f", share))
+                    .toString();
+        }
+    }
+
+    /**
+     * Measures the load of the nodes and plans the moves, which even it out
+     *
+     * @param nodes set of nodes of the ring
+     * @return moves sorted by node id, empty if the ring is balanced within REBALANCE_TOLERANCE
+     * @throws RemoteException if any node is not reachable
+     */
+    @NotNull
+    public static List<Move> plan(@NotNull Map<Integer, String> nodes) throws RemoteException {
+        if (nodes.size() < 2) {
+            logger.info("Ring of " + nodes.size() + " nodes cannot be rebalanced");
+            return Collections.emptyList();
+        }
+        Map<Integer, Long> requestsBefore = getRequestCounts(nodes);
+        try {
+            Thread.sleep(REBALANCE_SAMPLE_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while sampling request rates", e);
+        }
+        Map<Integer, Long> requestsAfter = getRequestCounts(nodes);
+        Map<Integer, NodeStatus> statuses = RemoteUtil.getStatuses(nodes);
+        if (statuses.size() < nodes.size() || requestsBefore.size() < nodes.size() || requestsAfter.size() < nodes.size()) {
+            throw new RemoteException("Cannot rebalance, not all nodes of nodeIds=" + nodes.keySet() + " are reachable");
+        }
+        long totalItems = 0;
+        long totalBytes = 0;
+        long totalRequests = 0;
+        for (int nodeId : nodes.keySet()) {
+            totalItems += statuses.get(nodeId).getItemCount();
+            totalBytes += getItemBytes(statuses.get(nodeId));
+            totalRequests += requestsAfter.get(nodeId) - requestsBefore.get(nodeId);
+        }
+        Map<Integer, Double> shares = new TreeMap<>();
+        boolean balanced = true;
+        for (int nodeId : nodes.keySet()) {
+            double share = average(statuses.get(nodeId).getItemCount(), totalItems,
+                    getItemBytes(statuses.get(nodeId)), totalBytes,
+                    requestsAfter.get(nodeId) - requestsBefore.get(nodeId), totalRequests, nodes.size());
+            shares.put(nodeId, share);
+            balanced &= Math.abs(share * nodes.size() - 1) <= REBALANCE_TOLERANCE;
+            logger.debug("NodeId=" + nodeId + " has load share=" + share);
+        }
+        if (balanced) {
+            logger.info("Ring is balanced within tolerance=" + REBALANCE_TOLERANCE + ", shares=" + shares);
+            return Collections.emptyList();
+        }
+        List<Integer> nodeIds = new ArrayList<>(nodes.keySet());
+        List<Integer> newNodeIds = getBoundaries(getWeights(nodes, shares), nodes.size());
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size(); i++) {
+            if (!nodeIds.get(i).equals(newNodeIds.get(i))) {
+                moves.add(new Move(nodeIds.get(i), newNodeIds.get(i), shares.get(nodeIds.get(i))));
+            }
+        }
+        logger.info("Planned moves=" + Arrays.toString(moves.toArray()) + " for shares=" + shares);
+        return moves;
+    }
+
+    /**
+     * Executes the planned moves one at a time, the node is moved only when it's new id lies between
+     * current ids of it's neighbours, so moves are repeated until every node is in place
+     *
+     * @param moves planned moves
+     * @param nodes set of nodes of the ring, as of the plan
+     * @return count of executed moves
+     * @throws RemoteException if the node fails to move
+     */
+    public static int execute(@NotNull List<Move> moves, @NotNull Map<Integer, String> nodes) throws RemoteException {
+        TreeMap<Integer, String> ring = new TreeMap<>(nodes);
+        List<Move> pending = new ArrayList<>(moves);
+        int count = 0;
+        while (!pending.isEmpty()) {
+            boolean progress = false;
+            for (Iterator<Move> iterator = pending.iterator(); iterator.hasNext(); ) {
+                Move move = iterator.next();
+                if (!isBetweenNeighbours(move, ring)) {
+                    logger.debug("Deferred move=" + move);
+                    continue;
+                }
+                if (count > 0) {
+                    throttle();
+                }
+                String host = ring.get(move.getNodeId());
+                logger.info("Moving nodeId=" + move.getNodeId() + " to nodeId=" + move.getNewNodeId() + ", " + (moves.size() - count) + " moves left");
+                RemoteUtil.getRemoteNode(new Node(move.getNodeId(), host), NodeServer.class).move(move.getNewNodeId());
+                ring.remove(move.getNodeId());
+                ring.put(move.getNewNodeId(), host);
+                iterator.remove();
+                MetricsUtil.increment("rebalance.moves");
+                progress = true;
+                count++;
+            }
+            if (!progress) {
+                throw new RemoteException("Cannot execute moves=" + Arrays.toString(pending.toArray()) + " in ring of nodeIds=" + ring.keySet());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns bytes of own items of the node, estimated from bytes of items and replicas by their counts,
+     * as replicas follow the token ranges of the predecessors
+     */
+    private static long getItemBytes(@NotNull NodeStatus status) {
+        long count = status.getItemCount() + status.getReplicaCount();
+        return count == 0 ? 0 : status.getBytes() * status.getItemCount() / count;
+    }
+
+    /**
+     * Returns average of the shares of the metrics, metrics with zero total are skipped
+     *
+     * @return average share, even share if all totals are zero
+     */
+    private static double average(long items, long totalItems, long bytes, long totalBytes, long requests, long totalRequests, int nodeCount) {
+        double sum = 0;
+        int count = 0;
+        if (totalItems > 0) {
+            sum += (double) items / totalItems;
+            count++;
+        }
+        if (totalBytes > 0) {
+            sum += (double) bytes / totalBytes;
+            count++;
+        }
+        if (totalRequests > 0) {
+            sum += (double) requests / totalRequests;
+            count++;
+        }
+        return count == 0 ? 1.0 / nodeCount : sum / count;
+    }
+
+    /**
+     * Spreads the load share of every node evenly over the keys sampled from it's items,
+     * node without items puts it's share on it's own id
+     *
+     * @return Map<ItemKey, Weight> sorted by key
+     */
+    @NotNull
+    private static TreeMap<Integer, Double> getWeights(@NotNull Map<Integer, String> nodes, @NotNull Map<Integer, Double> shares) throws RemoteException {
+        TreeMap<Integer, Double> weights = new TreeMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : getSampledKeys(nodes).entrySet()) {
+            List<Integer> keys = entry.getValue().isEmpty() ? Collections.singletonList(entry.getKey()) : entry.getValue();
+            double weight = shares.get(entry.getKey()) / keys.size();
+            for (int key : keys) {
+                weights.put(key, weight);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Cuts the keys into count ranges of equal weight, in ascending order of keys,
+     * the last range ends with the greatest key, keys outside of the ranges belong to the first range as usual
+     *
+     * @param weights Map<ItemKey, Weight> sorted by key
+     * @param count   of ranges
+     * @return strictly ascending positive ends of the ranges
+     */
+    @NotNull
+    private static List<Integer> getBoundaries(@NotNull TreeMap<Integer, Double> weights, int count) {
+        double total = 0;
+        for (double weight : weights.values()) {
+            total += weight;
+        }
+        List<Integer> boundaries = new ArrayList<>();
+        double cumulative = 0;
+        for (Map.Entry<Integer, Double> entry : weights.entrySet()) {
+            cumulative += entry.getValue();
+            while (boundaries.size() < count - 1 && cumulative >= total * (boundaries.size() + 1) / count) {
+                boundaries.add(entry.getKey());
+            }
+        }
+        while (boundaries.size() < count) {
+            boundaries.add(weights.lastKey());
+        }
+        int previous = 0;
+        for (int i = 0; i < boundaries.size(); i++) {
+            previous = Math.max(boundaries.get(i), previous + 1);
+            boundaries.set(i, previous);
+        }
+        return boundaries;
+    }
+
+    private static boolean isBetweenNeighbours(@NotNull Move move, @NotNull TreeMap<Integer, String> ring) {
+        if (ring.containsKey(move.getNewNodeId())) {
+            return false;
+        }
+        Integer predecessor = ring.lowerKey(move.getNodeId());
+        Integer successor = ring.higherKey(move.getNodeId());
+        return (predecessor == null || predecessor < move.getNewNodeId()) && (successor == null || move.getNewNodeId() < successor);
+    }
+
+    private static void throttle() throws RemoteException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(REBALANCE_MOVE_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while rebalancing", e);
+        }
+    }
+
+    /**
+     * Requests counters of item requests of the nodes in parallel
+     *
+     * @return Map<NodeId, Count> of reachable nodes
+     */
+    @NotNull
+    private static Map<Integer, Long> getRequestCounts(@NotNull Map<Integer, String> nodes) {
+        List<Callable<Map.Entry<Integer, Long>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Integer, String> entry : nodes.entrySet()) {
+            tasks.add(new Callable<Map.Entry<Integer, Long>>() {
+                @Override
+                public Map.Entry<Integer, Long> call() throws Exception {
+                    Number count = RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeClient.class).getMetrics().get(REQUESTS_METRIC);
+                    return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), count == null ? 0 : count.longValue());
+                }
+            });
+        }
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, Long> entry : MultithreadingUtil.executeAll(tasks)) {
+            counts.put(entry.getKey(), entry.getValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Requests keys sampled from items of the nodes in parallel
+     *
+     * @return Map<NodeId, Keys> of all nodes
+     * @throws RemoteException if any node is not reachable
+     */
+    @NotNull
+    private static Map<Integer, List<Integer>> getSampledKeys(@NotNull Map<Integer, String> nodes) throws RemoteException {
+        List<Callable<Map.Entry<Integer, List<Integer>>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Integer, String> entry : nodes.entrySet()) {
+            tasks.add(new Callable<Map.Entry<Integer, List<Integer>>>() {
+                @Override
+                public Map.Entry<Integer, List<Integer>> call() throws Exception {
+                    List<Integer> keys = RemoteUtil.getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).sampleItemKeys(SAMPLE_SIZE);
+                    return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), keys);
+                }
+            });
+        }
+        Map<Integer, List<Integer>> keys = new TreeMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : MultithreadingUtil.executeAll(tasks)) {
+            keys.put(entry.getKey(), entry.getValue());
+        }
+        if (keys.size() < nodes.size()) {
+            throw new RemoteException("Cannot sample item keys, not all nodes of nodeIds=" + nodes.keySet() + " are reachable");
+        }
+        return keys;
+    }
+}
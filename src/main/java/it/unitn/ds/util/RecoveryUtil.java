@@ -0,0 +1,159 @@
+package it.unitn.ds.util;
+
+import com.google.common.collect.Lists;
+import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to recover items from local storage of the recovering node back into the ring
+ * <p>
+ * Items of the storage are grouped by the responsible node and compared with the ring in batches of RECOVERY_BATCH_SIZE:
+ * one bulk read from every node of the preference list per batch, then one bulk update of the items, which are
+ * missing in the ring or newer than the ring, so recovery takes O(items / batch size × N) requests
+ * <p>
+ * Batches are recovered concurrently, progress and estimated time left are logged every PROGRESS_INTERVAL
+ *
+ * @see it.unitn.ds.ServerLauncher
+ * @see it.unitn.ds.util.StorageUtil#readAll(int, int)
+ */
+public abstract class RecoveryUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final int RECOVERY_BATCH_SIZE = ServiceConfiguration.getRecoveryBatchSize();
+
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Counts of items compared with the ring and recovered into it
+     */
+    private static final class Progress {
+
+        private final int total;
+
+        private final long startedAt = System.nanoTime();
+
+        private long reportedAt = startedAt;
+
+        private int checked;
+
+        private int recovered;
+
+        private Progress(int total) {
+            this.total = total;
+        }
+
+        private synchronized void add(int checked, int recovered) {
+            this.checked += checked;
+            this.recovered += recovered;
+            MetricsUtil.add("recovery.items.checked", checked);
+            MetricsUtil.add("recovery.items.recovered", recovered);
+            long now = System.nanoTime();
+            if (now - reportedAt >= PROGRESS_INTERVAL && this.checked < total) {
+                reportedAt = now;
+                long eta = (now - startedAt) * (total - this.checked) / this.checked;
+                logger.info("Recovery checked " + this.checked + " of " + total + " items (" + this.checked * 100 / total + "%)" +
+                        ", recovered " + this.recovered + ", ETA " + TimeUnit.NANOSECONDS.toSeconds(eta) + "s");
+            }
+        }
+
+        private synchronized int getRecovered() {
+            return recovered;
+        }
+    }
+
+    /**
+     * Passes items of local storage to the ring, if the item does not exist in the ring or it's version is older or concurrent
+     *
+     * @param node    recovering node, which already knows the ring
+     * @param storage items and replicas read from local storage of the node
+     * @return count of items recovered into the ring
+     */
+    public static int recover(@NotNull final Node node, @NotNull Collection<Item> storage) {
+        Map<Integer, Map<Integer, Item>> itemsByNodeId = new TreeMap<>();
+        for (Item item : storage) {
+            int nodeId = RemoteUtil.getNodeIdForItem(item.getKey(), node.getNodes());
+            if (!itemsByNodeId.containsKey(nodeId)) {
+                itemsByNodeId.put(nodeId, new TreeMap<Integer, Item>());
+            }
+            itemsByNodeId.get(nodeId).put(item.getKey(), item);
+        }
+        final Progress progress = new Progress(storage.size());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map<Integer, Item> items : itemsByNodeId.values()) {
+            for (final List<Item> batch : Lists.partition(new ArrayList<>(items.values()), RECOVERY_BATCH_SIZE)) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        progress.add(batch.size(), recoverBatch(node, batch));
+                        return null;
+                    }
+                });
+            }
+        }
+        logger.info("Recovering " + storage.size() + " items of local storage in " + tasks.size() + " batches");
+        MultithreadingUtil.executeAll(tasks);
+        return progress.getRecovered();
+    }
+
+    /**
+     * Compares the batch of items of the same responsible node with the ring and passes newer items to the ring
+     *
+     * @param node  recovering node
+     * @param batch items sorted by key
+     * @return count of items recovered into the ring
+     */
+    private static int recoverBatch(@NotNull Node node, @NotNull List<Item> batch) throws RemoteException {
+        List<Integer> keys = new ArrayList<>();
+        for (Item item : batch) {
+            keys.add(item.getKey());
+        }
+        List<Integer> preferenceList = RemoteUtil.getPreferenceList(batch.get(0).getKey(), node.getNodes(), Replication.getN());
+        Map<Integer, Item> latest = new HashMap<>();
+        for (int nodeId : preferenceList) {
+            try {
+                NodeServer nodeServer = getRemoteNode(node, nodeId);
+                boolean isOriginal = nodeId == preferenceList.get(0);
+                for (Item item : isOriginal ? nodeServer.readItems(keys) : nodeServer.readReplicas(keys)) {
+                    latest.put(item.getKey(), VersionUtil.resolve(latest.get(item.getKey()), item));
+                }
+            } catch (RemoteException e) {
+                logger.warn("Failed to compare items with nodeId=" + nodeId + ": " + e.getMessage());
+            }
+        }
+        List<Item> newer = new ArrayList<>();
+        for (Item item : batch) {
+            if (VersionUtil.isNewer(item, latest.get(item.getKey()))) {
+                newer.add(item);
+            }
+        }
+        if (newer.isEmpty()) {
+            return 0;
+        }
+        for (int nodeId : preferenceList) {
+            if (nodeId == preferenceList.get(0)) {
+                getRemoteNode(node, nodeId).updateItems(newer);
+            } else {
+                getRemoteNode(node, nodeId).updateReplicas(newer);
+            }
+        }
+        logger.debug("Recovered storage items=" + Arrays.toString(newer.toArray()) + " to nodeIds=" + preferenceList);
+        return newer.size();
+    }
+
+    @NotNull
+    private static NodeServer getRemoteNode(@NotNull Node node, int nodeId) {
+        return RemoteUtil.getRemoteNode(new Node(nodeId, node.getNodes().get(nodeId)), NodeServer.class);
+    }
+}
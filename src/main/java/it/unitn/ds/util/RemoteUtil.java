@@ -1,6 +1,12 @@
 package it.unitn.ds.util;
 
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import it.unitn.ds.ServiceConfiguration;
 import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.NodeStatus;
+import it.unitn.ds.entity.TokenRange;
 import it.unitn.ds.rmi.NodeServer;
 import it.unitn.ds.rmi.NullNodeRemote;
 import org.apache.logging.log4j.LogManager;
@@ -9,10 +15,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.rmi.Naming;
 import java.rmi.RemoteException;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Convenient class to deal with RMI for nodes
@@ -22,38 +26,131 @@ public abstract class RemoteUtil {
     private static final Logger logger = LogManager.getLogger();
 
     /**
-     * Get reference to remote node
+     * Separates the zone label from the address in the host of the node
+     */
+    private static final char ZONE_SEPARATOR = '@';
+
+    /**
+     * Get reference to remote node, nodes suspected by failure detector are skipped without lookup
      *
      * @param node  remote node
      * @param clazz type of the interface
      * @return reference to remote object
      * @see it.unitn.ds.rmi.NodeClient
      * @see it.unitn.ds.rmi.NodeServer
+     * @see it.unitn.ds.util.GossipUtil
      */
     @NotNull
     public static <T> T getRemoteNode(@NotNull Node node, @NotNull Class<T> clazz) {
+        if (GossipUtil.isSuspected(node.getId())) {
+            logger.debug("Skipped suspected node with id=" + node.getId());
+            return getNullRemoteNode(node, clazz);
+        }
+        return lookupRemoteNode(node, clazz);
+    }
+
+    /**
+     * Get reference to remote node, even if it is suspected to be crashed
+     *
+     * @param node  remote node
+     * @param clazz type of the interface
+     * @return reference to remote object
+     */
+    @NotNull
+    public static <T> T lookupRemoteNode(@NotNull Node node, @NotNull Class<T> clazz) {
         try {
             return clazz.cast(Naming.lookup(getNodeRMI(node)));
         } catch (Exception e) {
             logger.error("Failed to get remote interface for id=" + node.getId(), e);
-            try {
-                return clazz.cast(new NullNodeRemote(new Node()));
-            } catch (RemoteException re) {
-                logger.error("Failed to get Null Node Pattern", re);
-                throw new RuntimeException("RMI failed miserably", re);
-            }
+            return getNullRemoteNode(node, clazz);
         }
     }
 
     /**
-     * Returns RMI string of the remote node
+     * Returns Null Node Pattern of the node, which keeps id and host of the node, but does not know any nodes in the ring
+     *
+     * @param node  remote node
+     * @param clazz type of the interface
+     * @return reference to null object
+     */
+    @NotNull
+    private static <T> T getNullRemoteNode(@NotNull Node node, @NotNull Class<T> clazz) {
+        try {
+            Node nullNode = new Node(node.getId(), node.getHost());
+            nullNode.removeNode(node.getId());
+            return clazz.cast(new NullNodeRemote(nullNode));
+        } catch (RemoteException re) {
+            logger.error("Failed to get Null Node Pattern", re);
+            throw new RuntimeException("RMI failed miserably", re);
+        }
+    }
+
+    /**
+     * Returns RMI string of the remote node, zone label of the host is not a part of it
      *
      * @param node remote node
      * @return default lookup string
      */
     @NotNull
     public static String getNodeRMI(@NotNull Node node) {
-        return "rmi://" + node.getHost() + "/NodeRemote" + node.getId();
+        return "rmi://" + getAddress(node.getHost()) + "/NodeRemote" + node.getId();
+    }
+
+    /**
+     * Labels the host of the node with the zone, so the zone is known to every node and client knowing the node
+     *
+     * @param host of the node, may be labeled already
+     * @param zone of the node, empty if unknown
+     * @return host@zone, or the host itself if it is labeled already or the zone is empty
+     * @see it.unitn.ds.ServiceConfiguration#getZone()
+     */
+    @NotNull
+    public static String getLabeledHost(@NotNull String host, @NotNull String zone) {
+        return zone.isEmpty() || host.indexOf(ZONE_SEPARATOR) >= 0 ? host : host + ZONE_SEPARATOR + zone;
+    }
+
+    /**
+     * Returns zone label of the host
+     *
+     * @param host of the node, may be labeled with the zone
+     * @return zone of the node, empty if unknown
+     */
+    @NotNull
+    public static String getZone(@NotNull String host) {
+        int index = host.indexOf(ZONE_SEPARATOR);
+        return index < 0 ? "" : host.substring(index + 1);
+    }
+
+    /**
+     * Returns address of the host without zone label
+     */
+    @NotNull
+    public static String getAddress(@NotNull String host) {
+        int index = host.indexOf(ZONE_SEPARATOR);
+        return index < 0 ? host : host.substring(0, index);
+    }
+
+    /**
+     * Returns the nodes, which run in the same zone as current process
+     *
+     * @param nodeIds of the nodes
+     * @param nodes   set of nodes
+     * @return subset of node ids, empty if the zone of current process is unknown
+     */
+    @NotNull
+    public static Set<Integer> getLocalNodeIds(@NotNull Collection<Integer> nodeIds, @NotNull Map<Integer, String> nodes) {
+        Set<Integer> local = new HashSet<>();
+        String zone = ServiceConfiguration.getZone();
+        if (zone.isEmpty()) {
+            return local;
+        }
+        for (int nodeId : nodeIds) {
+            String host = nodes.get(nodeId);
+            if (host != null && getZone(host).equals(zone)) {
+                local.add(nodeId);
+            }
+        }
+        return local;
     }
 
     /**
@@ -86,6 +183,120 @@ public abstract class RemoteUtil {
         return nodes.keySet().iterator().next();
     }
 
+    /**
+     * Returns ids of the node responsible for the item followed by it's successors, which hold replicas of the item
+     * <p>
+     * Successors are walked clockwise and the successors in zones not taken yet are chosen first,
+     * the rest of the list is filled with skipped successors in the order of the ring, so replicas are spread
+     * over as many zones as possible. Without zone labels the list consists of the closest successors.
+     * The list of smaller count is always a prefix of the list of greater count
+     *
+     * @param itemKey of the item
+     * @param nodes   set of nodes
+     * @param count   size of the preference list, usually Replication N
+     * @return distinct node ids starting from the responsible node
+     */
+    @NotNull
+    public static List<Integer> getPreferenceList(int itemKey, @NotNull Map<Integer, String> nodes, int count) {
+        // copy, so concurrent gossip does not change the ring while walking it
+        NavigableMap<Integer, String> ring = new TreeMap<>(nodes);
+        int ownerId = getNodeIdForItem(itemKey, ring);
+        List<Integer> preferenceList = new ArrayList<>();
+        preferenceList.add(ownerId);
+        Set<String> zones = new HashSet<>();
+        zones.add(getZone(ring.get(ownerId)));
+        List<Integer> skipped = new ArrayList<>();
+        for (int nodeId : Iterables.concat(ring.tailMap(ownerId, false).keySet(), ring.headMap(ownerId, false).keySet())) {
+            if (preferenceList.size() >= count) {
+                break;
+            }
+            if (zones.add(getZone(ring.get(nodeId)))) {
+                preferenceList.add(nodeId);
+            } else {
+                skipped.add(nodeId);
+            }
+        }
+        for (int i = 0; i < skipped.size() && preferenceList.size() < count; i++) {
+            preferenceList.add(skipped.get(i));
+        }
+        return preferenceList;
+    }
+
+    /**
+     * Requests summaries of the nodes in parallel
+     *
+     * @param nodes set of nodes
+     * @return Map<NodeId, NodeStatus> of reachable nodes, crashed and unreachable nodes are missing
+     * @see it.unitn.ds.rmi.NodeServer#getStatus()
+     */
+    @NotNull
+    public static Map<Integer, NodeStatus> getStatuses(@NotNull Map<Integer, String> nodes) {
+        List<Callable<NodeStatus>> tasks = new ArrayList<>();
+        for (final Map.Entry<Integer, String> entry : nodes.entrySet()) {
+            tasks.add(new Callable<NodeStatus>() {
+                @Override
+                public NodeStatus call() throws Exception {
+                    return getRemoteNode(new Node(entry.getKey(), entry.getValue()), NodeServer.class).getStatus();
+                }
+            });
+        }
+        Map<Integer, NodeStatus> statuses = new TreeMap<>();
+        for (NodeStatus status : MultithreadingUtil.executeAll(tasks)) {
+            statuses.put(status.getId(), status);
+        }
+        return statuses;
+    }
+
+    /**
+     * Returns version of the ring topology, which is the same on every node knowing the same set of nodes
+     *
+     * @param nodes set of nodes
+     * @return hash of node ids and hosts
+     */
+    public static int getTopologyVersion(@NotNull Map<Integer, String> nodes) {
+        Hasher hasher = Hashing.murmur3_32().newHasher();
+        for (Map.Entry<Integer, String> entry : new TreeMap<>(nodes).entrySet()) {
+            hasher.putInt(entry.getKey()).putUnencodedChars(entry.getValue());
+        }
+        return hasher.hash().asInt();
+    }
+
+    /**
+     * Returns token range of items, the node is responsible for
+     *
+     * @param nodeId of the node
+     * @param nodes  set of nodes
+     * @return range from predecessor node id (exclusively) to node id (inclusively)
+     */
+    @NotNull
+    public static TokenRange getTokenRange(int nodeId, @NotNull Map<Integer, String> nodes) {
+        return new TokenRange(getPredecessorNodeId(nodeId, nodes), nodeId);
+    }
+
+    /**
+     * Returns token ranges of up to count predecessors, which the node holds replicas of
+     *
+     * @param nodeId of the node
+     * @param nodes  set of nodes
+     * @param count  how many replicas every range has besides the original, usually Replication N - 1
+     * @return ranges of predecessors, which have the node in their preference lists, starting from the closest one
+     */
+    @NotNull
+    public static List<TokenRange> getReplicaRanges(int nodeId, @NotNull Map<Integer, String> nodes, int count) {
+        List<TokenRange> ranges = new ArrayList<>();
+        int predecessorNodeId = nodeId;
+        for (int i = 1; i < nodes.size(); i++) {
+            predecessorNodeId = getPredecessorNodeId(predecessorNodeId, nodes);
+            if (predecessorNodeId == nodeId) {
+                break;
+            }
+            if (getPreferenceList(predecessorNodeId, nodes, count + 1).contains(nodeId)) {
+                ranges.add(getTokenRange(predecessorNodeId, nodes));
+            }
+        }
+        return ranges;
+    }
+
     /**
      * Returns clockwise successor node in the ring
      *
@@ -126,12 +337,51 @@ public abstract class RemoteUtil {
      */
     @NotNull
     public static Node getNthSuccessor(@NotNull Node node, @NotNull Map<Integer, String> nodes, int count) throws RemoteException {
-        int nodeId = node.getId();
+        int nodeId = getNthSuccessorId(node.getId(), nodes, count);
+        logger.trace("NodeId=" + node.getId() + " found nthSuccessor=" + nodeId);
+        return getRemoteNode(new Node(nodeId, nodes.get(nodeId)), NodeServer.class).getNode();
+    }
+
+    /**
+     * Returns Nth successor node id in the ring
+     *
+     * @param currentNodeId of the current node
+     * @param nodes         set of nodes
+     * @param count         how many nodes to skip
+     * @return nth successor node id
+     */
+    public static int getNthSuccessorId(int currentNodeId, @NotNull Map<Integer, String> nodes, int count) {
+        int nodeId = currentNodeId;
         for (int i = 0; i < count; i++) {
             nodeId = getSuccessorNodeId(nodeId, nodes);
         }
-        logger.trace("NodeId=" + node.getId() + " found nthSuccessor=" + nodeId);
-        return getRemoteNode(new Node(nodeId, nodes.get(nodeId)), NodeServer.class).getNode();
+        return nodeId;
+    }
+
+    /**
+     * Returns ids of up to count successors and count predecessors in the ring, as well as the nodes
+     * replicating the token range of the node, which may be further away if the nodes are labeled with zones,
+     * excluding current node
+     *
+     * @param currentNodeId of the current node
+     * @param nodes         set of nodes
+     * @param count         how many nodes to take in each direction, usually Replication N
+     * @return neighbour node ids
+     */
+    @NotNull
+    public static Set<Integer> getNeighbourNodeIds(int currentNodeId, @NotNull Map<Integer, String> nodes, int count) {
+        Set<Integer> neighbours = new TreeSet<>();
+        int successorId = currentNodeId;
+        int predecessorId = currentNodeId;
+        for (int i = 0; i < count; i++) {
+            successorId = getSuccessorNodeId(successorId, nodes);
+            predecessorId = getPredecessorNodeId(predecessorId, nodes);
+            neighbours.add(successorId);
+            neighbours.add(predecessorId);
+        }
+        neighbours.addAll(getPreferenceList(currentNodeId, nodes, count));
+        neighbours.remove(currentNodeId);
+        return neighbours;
     }
 
     /**
@@ -173,10 +423,21 @@ public abstract class RemoteUtil {
      * @return counterclockwise predecessor node
      */
     public static int getPredecessorNodeId(@NotNull Node node, @NotNull Map<Integer, String> nodes) {
+        return getPredecessorNodeId(node.getId(), nodes);
+    }
+
+    /**
+     * Returns counter clockwise predecessor node id in the ring
+     *
+     * @param currentNodeId of the current node
+     * @param nodes         set of nodes
+     * @return counterclockwise predecessor node id
+     */
+    public static int getPredecessorNodeId(int currentNodeId, @NotNull Map<Integer, String> nodes) {
         List<Integer> reverse = new LinkedList<>(nodes.keySet());
         Collections.reverse(reverse);
         for (int nodeId : reverse) {
-            if (nodeId < node.getId()) {
+            if (nodeId < currentNodeId) {
                 return nodeId;
             }
         }
@@ -0,0 +1,190 @@
+package it.unitn.ds.util;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Item;
+import it.unitn.ds.rmi.NodeServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convenient class to propagate items written by the coordinator in batches, one queue per destination node
+ * <p>
+ * Items to the same node are collected for REPLICATION_BATCH_LINGER or until REPLICATION_BATCH_SIZE items are queued
+ * and sent in one updateItems/updateReplicas request, so the destination writes the storage once per batch
+ * <p>
+ * Writes of the same item key in one batch are coalesced into the latest version, the write is acknowledged
+ * when the batch containing it has been sent
+ *
+ * @see it.unitn.ds.rmi.NodeRemote
+ * @see it.unitn.ds.util.MetricsUtil
+ */
+public abstract class ReplicationQueueUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final int REPLICATION_BATCH_SIZE = ServiceConfiguration.getReplicationBatchSize();
+
+    private static final long REPLICATION_BATCH_LINGER = ServiceConfiguration.getReplicationBatchLinger();
+
+    /**
+     * Items queued for one destination node, either as original items or as replicas
+     */
+    private static final class Batch {
+
+        private final NodeServer nodeServer;
+
+        private final int nodeId;
+
+        private final boolean isOriginal;
+
+        /**
+         * Map<ItemKey, Item>
+         */
+        private final Map<Integer, Item> items = new LinkedHashMap<>();
+
+        private final SettableFuture<Boolean> future = SettableFuture.create();
+
+        private Batch(@NotNull NodeServer nodeServer, int nodeId, boolean isOriginal) {
+            this.nodeServer = nodeServer;
+            this.nodeId = nodeId;
+            this.isOriginal = isOriginal;
+        }
+    }
+
+    /**
+     * Map<NodeId, Batch> of items queued for the nodes responsible for them
+     */
+    private static final Map<Integer, Batch> itemBatches = new HashMap<>();
+
+    /**
+     * Map<NodeId, Batch> of items queued for the nodes replicating them
+     */
+    private static final Map<Integer, Batch> replicaBatches = new HashMap<>();
+
+    private static final ScheduledExecutorService lingerExecutorService = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("replication-linger-%d").setDaemon(true).build());
+
+    private static final ExecutorService sendExecutorService = MultithreadingUtil.newExecutorService("replication-%d", ServiceConfiguration.getCoordinatorParallelism());
+
+    private static int depth;
+
+    static {
+        MetricsUtil.register("replication.queue.depth", new MetricsUtil.Gauge() {
+            @NotNull
+            @Override
+            public Number getValue() {
+                return getDepth();
+            }
+        });
+    }
+
+    /**
+     * Resizes the pool sending the batches to the configured coordinator parallelism, after the configuration has been changed
+     *
+     * @see it.unitn.ds.ServiceConfiguration#apply(java.util.Map)
+     */
+    public static void reconfigure() {
+        MultithreadingUtil.resize(sendExecutorService, ServiceConfiguration.getCoordinatorParallelism());
+    }
+
+    /**
+     * Queues the item to be sent to the node
+     *
+     * @param nodeServer reference to the destination node
+     * @param nodeId     of the destination node
+     * @param isOriginal true to update the item on the node responsible for it, false to update the replica
+     * @param item       to send
+     * @return future completed with true when the batch with the item has been sent, or failed if sending failed
+     */
+    @NotNull
+    public static ListenableFuture<Boolean> write(@NotNull NodeServer nodeServer, int nodeId, boolean isOriginal, @NotNull Item item) {
+        Map<Integer, Batch> batches = isOriginal ? itemBatches : replicaBatches;
+        Batch batch;
+        boolean isFull;
+        synchronized (ReplicationQueueUtil.class) {
+            batch = batches.get(nodeId);
+            if (batch == null) {
+                batch = new Batch(nodeServer, nodeId, isOriginal);
+                batches.put(nodeId, batch);
+                if (REPLICATION_BATCH_LINGER > 0) {
+                    schedule(batch);
+                }
+            }
+            Item queued = batch.items.get(item.getKey());
+            if (queued == null) {
+                depth++;
+            } else {
+                MetricsUtil.increment("replication.coalesced");
+            }
+            batch.items.put(item.getKey(), VersionUtil.resolve(queued, item));
+            isFull = REPLICATION_BATCH_LINGER == 0 || batch.items.size() >= REPLICATION_BATCH_SIZE;
+        }
+        if (isFull) {
+            flush(batch);
+        }
+        return batch.future;
+    }
+
+    private static synchronized int getDepth() {
+        return depth;
+    }
+
+    private static void schedule(@NotNull final Batch batch) {
+        lingerExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(batch);
+            }
+        }, REPLICATION_BATCH_LINGER, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the batch from the queue, unless it has been already flushed, and sends it to the destination node
+     *
+     * @param batch to send
+     */
+    private static void flush(@NotNull final Batch batch) {
+        synchronized (ReplicationQueueUtil.class) {
+            Map<Integer, Batch> batches = batch.isOriginal ? itemBatches : replicaBatches;
+            if (batches.get(batch.nodeId) != batch) {
+                return;
+            }
+            batches.remove(batch.nodeId);
+            depth -= batch.items.size();
+        }
+        sendExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Item> items = new ArrayList<>(batch.items.values());
+                long start = System.nanoTime();
+                try {
+                    if (batch.isOriginal) {
+                        batch.nodeServer.updateItems(items);
+                    } else {
+                        batch.nodeServer.updateReplicas(items);
+                    }
+                    CircuitBreakerUtil.success(batch.nodeId, System.nanoTime() - start);
+                    MetricsUtil.increment("replication.batches");
+                    MetricsUtil.add("replication.batched.items", items.size());
+                    logger.debug("Sent batch of " + items.size() + " items to nodeId=" + batch.nodeId + ", original=" + batch.isOriginal);
+                    batch.future.set(true);
+                } catch (Exception e) {
+                    CircuitBreakerUtil.failure(batch.nodeId);
+                    MetricsUtil.increment("replication.failed.batches");
+                    logger.debug("Failed to send batch of " + items.size() + " items to nodeId=" + batch.nodeId, e);
+                    batch.future.setException(e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package it.unitn.ds.util;
+
+import it.unitn.ds.Replication;
+import it.unitn.ds.ServiceConfiguration;
+import it.unitn.ds.entity.Node;
+import it.unitn.ds.rmi.NodeClient;
+import it.unitn.ds.rmi.NodeServer;
+import it.unitn.ds.rmi.OverloadedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.rmi.Naming;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Convenient class for the client to route requests directly to the nodes holding the item, skipping extra coordinator hop
+ * <p>
+ * Client keeps a copy of the ring and sends every request to a random node of the item preference list
+ * (the responsible node and it's Replication N - 1 successors), so the load is spread among the replicas
+ * <p>
+ * The ring is refreshed every CLIENT_TOPOLOGY_TTL if topology version of the ring has changed,
+ * or immediately if the chosen node is not reachable, in which case the request is retried on another node
+ * <p>
+ * Requests rejected by an overloaded node are retried on another node of the preference list without refreshing the ring
+ *
+ * @see it.unitn.ds.ClientLauncher
+ * @see it.unitn.ds.util.RemoteUtil
+ */
+public abstract class RoutingUtil {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final long CLIENT_TOPOLOGY_TTL = ServiceConfiguration.getClientTopologyTtl();
+
+    /**
+     * Request to be sent to the chosen coordinator
+     */
+    public interface Request<T> {
+
+        @Nullable
+        T execute(@NotNull NodeClient coordinator) throws RemoteException;
+    }
+
+    /**
+     * Map<NodeId, Host>
+     */
+    private static final Map<Integer, String> nodes = new ConcurrentSkipListMap<>();
+
+    private static final Random random = new Random();
+
+    private static int topologyVersion;
+
+    private static long refreshedAt;
+
+    /**
+     * Fetches the ring from the existing node
+     *
+     * @param host of the existing node
+     * @param id   of the existing node
+     * @return true if the ring has been fetched, false otherwise
+     */
+    public static synchronized boolean connect(@NotNull String host, int id) {
+        nodes.clear();
+        nodes.put(id, host);
+        topologyVersion = 0;
+        return refresh();
+    }
+
+    /**
+     * Executes the request on a random reachable node of the item preference list, nodes of the same zone as the client
+     * are chosen first
+     *
+     * @param itemKey of the item
+     * @param request to execute
+     * @return result of the request, null result is returned only if the chosen node is in the ring
+     * @throws RemoteException if none of the nodes in the preference list is reachable
+     */
+    @Nullable
+    public static <T> T execute(int itemKey, @NotNull Request<T> request) throws RemoteException {
+        if (nodes.isEmpty()) {
+            throw new RemoteException("Client is not connected to the ring");
+        }
+        if (System.currentTimeMillis() - refreshedAt > CLIENT_TOPOLOGY_TTL) {
+            refresh();
+        }
+        Set<Integer> misrouted = new HashSet<>();
+        for (int i = 0; i < Replication.getN(); i++) {
+            Map<Integer, String> nodes = getNodes();
+            List<Integer> preferenceList = RemoteUtil.getPreferenceList(itemKey, nodes, Replication.getN());
+            preferenceList.removeAll(misrouted);
+            if (preferenceList.isEmpty()) {
+                break;
+            }
+            List<Integer> localNodeIds = new ArrayList<>(RemoteUtil.getLocalNodeIds(preferenceList, nodes));
+            if (!localNodeIds.isEmpty()) {
+                preferenceList = localNodeIds;
+            }
+            int nodeId = preferenceList.get(random.nextInt(preferenceList.size()));
+            try {
+                Remote coordinator = lookup(nodeId);
+                T result = request.execute((NodeClient) coordinator);
+                if (result != null || ((NodeServer) coordinator).getTopologyVersion() != 0) {
+                    logger.debug("Routed itemKey=" + itemKey + " to nodeId=" + nodeId);
+                    return result;
+                }
+                logger.debug("Misrouted itemKey=" + itemKey + " to nodeId=" + nodeId + ", which is not in the ring");
+            } catch (Exception e) {
+                if (OverloadedException.isCause(e)) {
+                    logger.debug("Rejected itemKey=" + itemKey + " by overloaded nodeId=" + nodeId);
+                    misrouted.add(nodeId);
+                    continue;
+                }
+                logger.debug("Misrouted itemKey=" + itemKey + " to unreachable nodeId=" + nodeId, e);
+            }
+            misrouted.add(nodeId);
+            refresh();
+        }
+        throw new RemoteException("No node of the preference list is reachable for itemKey=" + itemKey);
+    }
+
+    /**
+     * Returns current copy of the ring
+     *
+     * @return Map<NodeId, Host>
+     */
+    @NotNull
+    public static Map<Integer, String> getNodes() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    /**
+     * Asks known nodes one by one for topology version and fetches the ring from the first one in the ring,
+     * if the version differs from the current copy
+     *
+     * @return true if some node replied, false otherwise
+     */
+    private static synchronized boolean refresh() {
+        List<Integer> nodeIds = new ArrayList<>(nodes.keySet());
+        Collections.shuffle(nodeIds, random);
+        for (int nodeId : nodeIds) {
+            try {
+                NodeServer server = (NodeServer) lookup(nodeId);
+                int version = server.getTopologyVersion();
+                if (version == 0) {
+                    continue; // crashed or left the ring
+                }
+                if (version != topologyVersion) {
+                    Map<Integer, String> ring = server.getNodes();
+                    nodes.clear();
+                    nodes.putAll(ring);
+                    topologyVersion = version;
+                    logger.info("Refreshed topology version=" + version + ", nodes=" + Arrays.toString(nodes.entrySet().toArray()));
+                }
+                refreshedAt = System.currentTimeMillis();
+                return true;
+            } catch (Exception e) {
+                logger.debug("Failed to refresh topology from nodeId=" + nodeId, e);
+            }
+        }
+        logger.warn("Failed to refresh topology, none of known nodes is in the ring");
+        return false;
+    }
+
+    @NotNull
+    private static Remote lookup(int nodeId) throws Exception {
+        return Naming.lookup(RemoteUtil.getNodeRMI(new Node(nodeId, nodes.get(nodeId))));
+    }
+}
@@ -1,24 +1,41 @@
 package it.unitn.ds.util;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import it.unitn.ds.Compression;
 import it.unitn.ds.entity.Item;
-import it.unitn.ds.entity.Node;
+import it.unitn.ds.entity.VectorClock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Convenient class to work with Node's internal list of items
  * <p>
- * Maintains CSV file (under STORAGE_FOLDER directory) in format: {key},{value},{version}
+ * Maintains CSV file (under STORAGE_FOLDER directory) in format: {key}[:{rawKey}],{value},{clock},{timestamp}[:{expiresAt}:{tombstone}][,{sibling}]
+ * <p>
+ * Raw key is written in URL safe Base64 only for items of string and binary keys. Clock is written as {nodeId}:{counter} pairs separated by CLOCK_SEPARATOR, expiration is written only for items
+ * with time to live or tombstones, siblings take the rest of the columns,
+ * long values and siblings are compressed by CompressionUtil
+ * <p>
+ * CSV files in the legacy format {key},{value},{version} are still read, version becomes the single counter
+ * of the clock, so the storage is converted by the next write instead of being wiped
+ * <p>
+ * CSV file is never modified in place, every write replaces it with the new file, so the file is an immutable segment
+ * until the next write. Snapshots hard-link the current segment (under SNAPSHOT_FOLDER directory) and backups write
+ * items changed and keys removed since the latest snapshot, both without blocking writers for longer than linking the file
  */
 public abstract class StorageUtil {
 
@@ -26,47 +43,212 @@ public abstract class StorageUtil {
 
     private static final String SEPARATOR = ",";
 
+    private static final String CLOCK_SEPARATOR = ";";
+
+    private static final String COUNTER_SEPARATOR = ":";
+
+    /**
+     * Count of columns in CSV files written before vector clocks: {key},{value},{version}
+     */
+    private static final int LEGACY_COLUMNS = 3;
+
+    /**
+     * Node id of the single counter, which holds version of the item read from CSV file in the legacy format,
+     * node ids are positive, so the counter never clashes with increments of the coordinators
+     */
+    private static final int LEGACY_NODE_ID = 0;
+
     private static final String STORAGE_FOLDER = "storage";
 
+    private static final String SNAPSHOT_FOLDER = STORAGE_FOLDER + "/snapshot";
+
+    private static final String SNAPSHOT_FILE = "snapshot.csv";
+
+    private static final String BACKUP_FILE_PREFIX = "backup-";
+
+    /**
+     * Prefix of the backup line, which records item key removed since the snapshot: -{key}
+     */
+    private static final String REMOVAL_PREFIX = "-";
+
+    /**
+     * Maximum size of one chunk of CSV file read in parallel
+     */
+    private static final long MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Serializes replacing of CSV file with linking it into snapshots
+     */
+    private static final Object fileLock = new Object();
+
     /**
      * Creates/Updates list of nodes items and replicas into CSV file
+     * <p>
+     * Items are written into temporary file, which atomically replaces CSV file
      *
-     * @param node to write
+     * @param nodeId   of the node
+     * @param items    of the node
+     * @param replicas of the node
      */
-    public static void write(@NotNull Node node) {
-        try (PrintWriter writer = new PrintWriter(getFileName(node.getId()), "UTF-8")) {
-            writeItems(writer, node.getItems().values());
-            writeItems(writer, node.getReplicas().values());
+    public static void write(int nodeId, @NotNull Collection<Item> items, @NotNull Collection<Item> replicas) {
+        Path temporary = Paths.get(getFileName(nodeId) + ".tmp");
+        try {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(temporary, Charsets.UTF_8))) {
+                writeItems(writer, items);
+                writeItems(writer, replicas);
+            }
+            synchronized (fileLock) {
+                Files.move(temporary, Paths.get(getFileName(nodeId)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
         } catch (Exception e) {
-            logger.error("Failed to write items from node=" + node, e);
+            logger.error("Failed to write items of nodeId=" + nodeId, e);
         }
     }
 
-    private static void writeItems(@NotNull PrintWriter writer, @NotNull Collection<Item> items) {
+    private static void writeItems(@NotNull PrintWriter writer, @NotNull Collection<Item> items) throws IOException {
         for (Item item : items) {
-            writer.write(item.getKey() + SEPARATOR + item.getValue() + SEPARATOR + item.getVersion() + System.getProperty("line.separator"));
+            Compression compression = KeyspaceUtil.getCompression(item.getKey());
+            StringBuilder line = new StringBuilder();
+            line.append(item.getKey());
+            if (item.getRawKey() != null) {
+                line.append(COUNTER_SEPARATOR).append(KeyUtil.encodeText(item.getRawKey()));
+            }
+            line.append(SEPARATOR).append(CompressionUtil.encodeText(item.getValue(), compression)).append(SEPARATOR);
+            line.append(Joiner.on(CLOCK_SEPARATOR).withKeyValueSeparator(COUNTER_SEPARATOR).join(item.getClock().getCounters()));
+            line.append(SEPARATOR).append(item.getTimestamp());
+            if (item.getExpiresAt() != 0 || item.isTombstone()) {
+                line.append(COUNTER_SEPARATOR).append(item.getExpiresAt()).append(COUNTER_SEPARATOR).append(item.isTombstone() ? 1 : 0);
+            }
+            for (String sibling : item.getSiblings()) {
+                line.append(SEPARATOR).append(CompressionUtil.encodeText(sibling, compression));
+            }
+            writer.write(line + System.getProperty("line.separator"));
             logger.debug("Storage wrote an item=" + item);
         }
     }
 
     /**
-     * Returns all items and replicas from node's CSV file
+     * Parses CSV line into an item, also used to read CSV files of bulk load
+     * <p>
+     * Line in the legacy format is never compressed and has neither clock nor timestamp,
+     * so the item is older than any item written by the current format
+     *
+     * @param line of CSV file
+     * @return parsed item
+     * @see it.unitn.ds.util.BulkLoadUtil
+     */
+    @NotNull
+    public static Item parseItem(@NotNull String line) throws IOException {
+        List<String> columns = Splitter.on(SEPARATOR).splitToList(line);
+        if (columns.size() == LEGACY_COLUMNS) {
+            return parseLegacyItem(columns);
+        }
+        Iterator<String> it = columns.iterator();
+        Iterator<String> keys = Splitter.on(COUNTER_SEPARATOR).split(it.next()).iterator();
+        int key = Integer.parseInt(keys.next());
+        byte[] rawKey = keys.hasNext() ? KeyUtil.decodeText(keys.next()) : null;
+        String value = CompressionUtil.decodeText(it.next());
+        Map<Integer, Integer> counters = new TreeMap<>();
+        String clock = it.next();
+        if (!clock.isEmpty()) {
+            for (Map.Entry<String, String> entry : Splitter.on(CLOCK_SEPARATOR).withKeyValueSeparator(COUNTER_SEPARATOR).split(clock).entrySet()) {
+                counters.put(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+            }
+        }
+        Iterator<String> time = Splitter.on(COUNTER_SEPARATOR).split(it.next()).iterator();
+        long timestamp = Long.parseLong(time.next());
+        long expiresAt = time.hasNext() ? Long.parseLong(time.next()) : 0;
+        boolean tombstone = time.hasNext() && Integer.parseInt(time.next()) == 1;
+        List<String> siblings = new ArrayList<>();
+        while (it.hasNext()) {
+            siblings.add(CompressionUtil.decodeText(it.next()));
+        }
+        return new Item(key, rawKey, value, new VectorClock(counters), timestamp, siblings, expiresAt, tombstone);
+    }
+
+    @NotNull
+    private static Item parseLegacyItem(@NotNull List<String> columns) {
+        Map<Integer, Integer> counters = new TreeMap<>();
+        counters.put(LEGACY_NODE_ID, Integer.parseInt(columns.get(2)));
+        return new Item(Integer.parseInt(columns.get(0)), columns.get(1), new VectorClock(counters), 0);
+    }
+
+    /**
+     * Returns all items and replicas from node's CSV file, which is split at line ends into chunks parsed in parallel
+     * <p>
+     * All chunks are read from the same open file, so they are consistent even if the file is replaced meanwhile
      *
      * @param nodeId of the node
-     * @return all items and replicas of node's storage
+     * @param chunks count of chunks, increased so no chunk exceeds MAX_CHUNK_BYTES
+     * @return all items and replicas of node's storage, items of the chunks, which failed to be read, are skipped
+     * @see it.unitn.ds.util.MultithreadingUtil#executeAll(java.util.Collection)
      */
     @NotNull
-    public static List<Item> readAll(int nodeId) {
-        List<Item> items = new LinkedList<>();
-        try {
-            for (String line : Files.readAllLines(Paths.get((getFileName(nodeId))), Charsets.UTF_8)) {
-                Iterator<String> it = Splitter.on(SEPARATOR).split(line).iterator();
-                items.add(new Item(Integer.parseInt(it.next()), it.next(), Integer.parseInt(it.next())));
+    public static List<Item> readAll(int nodeId, int chunks) {
+        List<Item> items = new ArrayList<>();
+        Path path = Paths.get(getFileName(nodeId));
+        if (!Files.exists(path)) {
+            logger.debug("Storage of node=" + nodeId + " does not exist");
+            return items;
+        }
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) Math.max(chunks, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            List<Callable<List<Item>>> tasks = new ArrayList<>();
+            long start = 0;
+            for (int i = 1; i <= count && start < size; i++) {
+                final long chunkStart = start;
+                final long chunkEnd = i == count ? size : getLineEnd(channel, Math.max(start, size * i / count));
+                tasks.add(new Callable<List<Item>>() {
+                    @Override
+                    public List<Item> call() throws Exception {
+                        return readChunk(channel, chunkStart, chunkEnd);
+                    }
+                });
+                start = chunkEnd;
+            }
+            for (List<Item> chunk : MultithreadingUtil.executeAll(tasks)) {
+                items.addAll(chunk);
             }
+            logger.debug("Storage of node=" + nodeId + " read " + items.size() + " items in " + tasks.size() + " chunks of " + size + " bytes");
         } catch (Exception e) {
             logger.error("Failed to read items from nodeId=" + nodeId, e);
         }
-        logger.debug("Storage of node=" + nodeId + " read items=" + Arrays.toString(items.toArray()));
+        return items;
+    }
+
+    /**
+     * Returns position right after the end of the line, which contains the byte at the position
+     */
+    private static long getLineEnd(@NotNull FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    @NotNull
+    private static List<Item> readChunk(@NotNull FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        List<Item> items = new ArrayList<>();
+        String chunk = new String(buffer.array(), 0, buffer.position(), Charsets.UTF_8);
+        for (String line : Splitter.on('\n').trimResults(CharMatcher.is('\r')).omitEmptyStrings().split(chunk)) {
+            items.add(parseItem(line));
+        }
         return items;
     }
 
@@ -81,9 +263,8 @@ public abstract class StorageUtil {
     public static Item read(int nodeId, int itemKey) {
         try {
             for (String line : Files.readAllLines(Paths.get((getFileName(nodeId))), Charsets.UTF_8)) {
-                if (line.startsWith(itemKey + SEPARATOR)) {
-                    Iterator<String> it = Splitter.on(SEPARATOR).split(line).iterator();
-                    Item item = new Item(Integer.parseInt(it.next()), it.next(), Integer.parseInt(it.next()));
+                if (parseKey(line) == itemKey) {
+                    Item item = parseItem(line);
                     logger.debug("Storage of node=" + nodeId + " read an item=" + item);
                     return item;
                 }
@@ -94,15 +275,186 @@ public abstract class StorageUtil {
         return null;
     }
 
+    /**
+     * Takes point-in-time snapshot of node's CSV file
+     * <p>
+     * Current CSV file is hard-linked into new snapshot directory, or copied if file system does not support links
+     *
+     * @param nodeId of the node
+     * @return snapshot directory, or null if snapshot failed
+     */
+    @Nullable
+    public static Path snapshot(int nodeId) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            Path directory = Files.createDirectories(Paths.get(getSnapshotFolder(nodeId), getTimestamp()));
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            Path file = Paths.get(getFileName(nodeId));
+            synchronized (fileLock) {
+                if (!Files.exists(file)) {
+                    Files.createFile(snapshot);
+                } else {
+                    try {
+                        Files.createLink(snapshot, file);
+                    } catch (UnsupportedOperationException | IOException e) {
+                        logger.debug("Failed to link storage file, copying instead", e);
+                        Files.copy(file, snapshot);
+                    }
+                }
+            }
+            logger.debug("Storage of node=" + nodeId + " took snapshot=" + snapshot + " in " + stopwatch);
+            return directory;
+        } catch (Exception e) {
+            logger.error("Failed to take snapshot of nodeId=" + nodeId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Takes incremental backup of node's CSV file, which contains items added or changed since the latest snapshot
+     * and removal markers of items removed since then, e.g. moved to other nodes or compacted tombstones
+     * <p>
+     * Every backup is relative to the latest snapshot, so restore applies the latest backup only
+     *
+     * @param nodeId of the node
+     * @return backup file, or null if there is no snapshot to back up against or backup failed
+     */
+    @Nullable
+    public static Path backup(int nodeId) {
+        try {
+            Path directory = getLatestSnapshot(nodeId);
+            if (directory == null) {
+                logger.warn("No snapshot of nodeId=" + nodeId + " to take backup against");
+                return null;
+            }
+            Map<Integer, String> snapshot = readLines(directory.resolve(SNAPSHOT_FILE));
+            Map<Integer, String> current = readLines(Paths.get(getFileName(nodeId)));
+            Path backup = directory.resolve(BACKUP_FILE_PREFIX + getTimestamp() + ".csv");
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(backup, Charsets.UTF_8))) {
+                for (Map.Entry<Integer, String> entry : current.entrySet()) {
+                    if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+                        writer.write(entry.getValue() + System.getProperty("line.separator"));
+                    }
+                }
+                for (int key : snapshot.keySet()) {
+                    if (!current.containsKey(key)) {
+                        writer.write(REMOVAL_PREFIX + key + System.getProperty("line.separator"));
+                    }
+                }
+            }
+            logger.debug("Storage of node=" + nodeId + " took backup=" + backup);
+            return backup;
+        } catch (Exception e) {
+            logger.error("Failed to take backup of nodeId=" + nodeId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces node's CSV file with the latest snapshot and the latest backup taken after it
+     * <p>
+     * Items removed from the node after the snapshot and before the backup are removed again, so neither moved items
+     * nor compacted tombstones are revived
+     *
+     * @param nodeId of the node
+     * @return count of restored items and replicas, or -1 if there is no snapshot or restore failed
+     */
+    public static int restore(int nodeId) {
+        try {
+            Path directory = getLatestSnapshot(nodeId);
+            if (directory == null) {
+                logger.warn("No snapshot of nodeId=" + nodeId + " to restore from");
+                return -1;
+            }
+            Map<Integer, String> lines = readLines(directory.resolve(SNAPSHOT_FILE));
+            Path backup = getLatest(directory, BACKUP_FILE_PREFIX);
+            if (backup != null) {
+                for (String line : Files.readAllLines(backup, Charsets.UTF_8)) {
+                    if (line.startsWith(REMOVAL_PREFIX)) {
+                        lines.remove(Integer.parseInt(line.substring(REMOVAL_PREFIX.length())));
+                    } else {
+                        lines.put(parseKey(line), line);
+                    }
+                }
+            }
+            Path temporary = Paths.get(getFileName(nodeId) + ".tmp");
+            Files.write(temporary, lines.values(), Charsets.UTF_8);
+            synchronized (fileLock) {
+                Files.move(temporary, Paths.get(getFileName(nodeId)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            logger.debug("Storage of node=" + nodeId + " restored snapshot=" + directory + ", backup=" + backup);
+            return lines.size();
+        } catch (Exception e) {
+            logger.error("Failed to restore nodeId=" + nodeId, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Reads CSV file into lines by item key, file is replaced atomically, so it is read consistently without locking
+     *
+     * @param path of CSV file
+     * @return Map<ItemKey, Line>, empty if file does not exist
+     */
+    @NotNull
+    private static Map<Integer, String> readLines(@NotNull Path path) throws IOException {
+        Map<Integer, String> lines = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, Charsets.UTF_8)) {
+                lines.put(parseKey(line), line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns item key of CSV line without parsing the rest of the line
+     *
+     * @param line of CSV file
+     * @return item key before raw key, if any
+     */
+    private static int parseKey(@NotNull String line) {
+        int end = CharMatcher.anyOf(SEPARATOR + COUNTER_SEPARATOR).indexIn(line);
+        return Integer.parseInt(end < 0 ? line : line.substring(0, end));
+    }
+
+    @Nullable
+    private static Path getLatestSnapshot(int nodeId) throws IOException {
+        Path folder = Paths.get(getSnapshotFolder(nodeId));
+        return Files.isDirectory(folder) ? getLatest(folder, "") : null;
+    }
+
+    /**
+     * Returns the latest file in the directory, names start with zero-padded timestamps after the prefix
+     *
+     * @param directory to search in
+     * @param prefix    of the file names
+     * @return path of the latest file, or null if there is none
+     */
+    @Nullable
+    private static Path getLatest(@NotNull Path directory, @NotNull String prefix) throws IOException {
+        Path latest = null;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path path : paths) {
+                if (latest == null || path.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                    latest = path;
+                }
+            }
+        }
+        return latest;
+    }
+
+    @NotNull
+    private static String getTimestamp() {
+        return String.format("%015d", System.currentTimeMillis());
+    }
+
     /**
      * Creates storage folder to keep node's CSV files in
      */
     public static void init() {
         try {
-            Path path = Paths.get(STORAGE_FOLDER);
-            if (!Files.exists(path)) {
-                Files.createDirectory(path);
-            }
+            Files.createDirectories(Paths.get(STORAGE_FOLDER));
         } catch (Exception e) {
             logger.error("Failed to create storage directory", e);
         }
@@ -128,4 +480,9 @@ public abstract class StorageUtil {
     private static String getFileName(int nodeId) {
         return STORAGE_FOLDER + "/Node-" + nodeId + ".csv";
     }
+
+    @NotNull
+    private static String getSnapshotFolder(int nodeId) {
+        return SNAPSHOT_FOLDER + "/Node-" + nodeId;
+    }
 }
@@ -0,0 +1,122 @@
+package it.unitn.ds.util;
+
+import it.unitn.ds.ConflictResolution;
+import it.unitn.ds.Replication;
+import it.unitn.ds.entity.Item;
+import it.unitn.ds.entity.VectorClock;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Convenient class to compare versions of the same item and resolve concurrent updates
+ * <p>
+ * Resolution is deterministic, so every replica resolving the same versions ends up with the same item
+ *
+ * @see it.unitn.ds.entity.VectorClock
+ * @see it.unitn.ds.ConflictResolution
+ */
+public abstract class VersionUtil {
+
+    /**
+     * Returns latest version of the item among all in the collection
+     *
+     * @param items collection of items with the same item key
+     * @return latest version item, or null if collection is empty
+     */
+    @Nullable
+    public static Item getLatest(@NotNull Collection<Item> items) {
+        Item latest = null;
+        for (Item item : items) {
+            latest = resolve(latest, item);
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the item, which supersedes both given versions
+     * <p>
+     * Concurrent versions are resolved according to Replication conflict resolution into the item with merged clock
+     *
+     * @param existing version of the item, if any
+     * @param item     another version of the same item
+     * @return latest version of the item
+     * @see it.unitn.ds.Replication
+     */
+    @NotNull
+    public static Item resolve(@Nullable Item existing, @NotNull Item item) {
+        if (existing == null) {
+            return item;
+        }
+        switch (item.getClock().compare(existing.getClock())) {
+            case AFTER:
+                return item;
+            case CONCURRENT:
+                return resolveConcurrent(existing, item);
+            case EQUAL:
+                return isTombstoning(item, existing) ? item : existing;
+            default:
+                return existing;
+        }
+    }
+
+    /**
+     * Tells if the item has to be propagated over the existing version, i.e. existing version does not supersede it
+     *
+     * @param item     version of the item to test
+     * @param existing version of the item, if any
+     * @return true if existing is null, older or concurrent, false otherwise
+     */
+    public static boolean isNewer(@NotNull Item item, @Nullable Item existing) {
+        if (existing == null) {
+            return true;
+        }
+        VectorClock.Order order = item.getClock().compare(existing.getClock());
+        return order == VectorClock.Order.AFTER || order == VectorClock.Order.CONCURRENT ||
+                order == VectorClock.Order.EQUAL && isTombstoning(item, existing);
+    }
+
+    /**
+     * Tombstone supersedes the live item of the same version, which it has been made of
+     */
+    private static boolean isTombstoning(@NotNull Item item, @NotNull Item existing) {
+        return item.isTombstone() && !existing.isTombstone();
+    }
+
+    /**
+     * Picks the winner by timestamp (and value on tie) and keeps the rest of the values as siblings if required
+     *
+     * @param first  concurrent version of the item
+     * @param second concurrent version of the item
+     * @return resolved item with merged clock
+     */
+    @NotNull
+    private static Item resolveConcurrent(@NotNull Item first, @NotNull Item second) {
+        Item winner = isWinner(first, second) ? first : second;
+        Set<String> siblings = new TreeSet<>();
+        if (Replication.getConflictResolution() == ConflictResolution.SIBLINGS) {
+            for (Item version : Arrays.asList(first, second)) {
+                if (!version.isTombstone()) {
+                    siblings.add(version.getValue());
+                    siblings.addAll(version.getSiblings());
+                }
+            }
+            siblings.remove(winner.getValue());
+        }
+        VectorClock clock = first.getClock().merge(second.getClock());
+        long timestamp = Math.max(first.getTimestamp(), second.getTimestamp());
+        return new Item(winner.getKey(), winner.getRawKey(), winner.getValue(), clock, timestamp, new ArrayList<>(siblings), winner.getExpiresAt(), winner.isTombstone());
+    }
+
+    private static boolean isWinner(@NotNull Item item, @NotNull Item other) {
+        if (item.getTimestamp() != other.getTimestamp()) {
+            return item.getTimestamp() > other.getTimestamp();
+        }
+        return item.getValue().compareTo(other.getValue()) >= 0;
+    }
+}